@@ -0,0 +1,105 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Bitset operations on the incubating Vector API, processing as many words at once as the CPU vectors hold.
+ * This source root needs {@code --add-modules jdk.incubator.vector} to compile and run; {@link Bitsets}
+ * loads the class reflectively and keeps the scalar code when it is missing.
+ */
+public class VectorBitsetKernel implements BitsetKernel {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final long ODD_BITS = 0x5555555555555555L;
+    private static final long BIT_PAIRS = 0x3333333333333333L;
+    private static final long NIBBLES = 0x0f0f0f0f0f0f0f0fL;
+
+    @Override
+    public int popCount(long[] words) {
+        int i = 0;
+        LongVector counts = LongVector.zero(SPECIES);
+        for (int bound = SPECIES.loopBound(words.length); i < bound; i += SPECIES.length()) {
+            counts = counts.add(bitCount(LongVector.fromArray(SPECIES, words, i)));
+        }
+        long count = counts.reduceLanes(VectorOperators.ADD);
+        for (; i < words.length; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return (int) count;
+    }
+
+    @Override
+    public int intersectionCount(long[] first, long[] second) {
+        int i = 0;
+        LongVector counts = LongVector.zero(SPECIES);
+        for (int bound = SPECIES.loopBound(first.length); i < bound; i += SPECIES.length()) {
+            LongVector common = LongVector.fromArray(SPECIES, first, i).and(LongVector.fromArray(SPECIES, second, i));
+            counts = counts.add(bitCount(common));
+        }
+        long count = counts.reduceLanes(VectorOperators.ADD);
+        for (; i < first.length; i++) {
+            count += Long.bitCount(first[i] & second[i]);
+        }
+        return (int) count;
+    }
+
+    @Override
+    public void andNot(long[] target, long[] mask) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(target.length); i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, target, i)
+                    .lanewise(VectorOperators.AND_NOT, LongVector.fromArray(SPECIES, mask, i))
+                    .intoArray(target, i);
+        }
+        for (; i < target.length; i++) {
+            target[i] &= ~mask[i];
+        }
+    }
+
+    @Override
+    public boolean isSubset(long[] subset, long[] superset) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(subset.length); i < bound; i += SPECIES.length()) {
+            LongVector outside = LongVector.fromArray(SPECIES, subset, i)
+                    .lanewise(VectorOperators.AND_NOT, LongVector.fromArray(SPECIES, superset, i));
+            if (outside.compare(VectorOperators.NE, 0).anyTrue()) {
+                return false;
+            }
+        }
+        for (; i < subset.length; i++) {
+            if ((subset[i] & ~superset[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean intersects(long[] first, long[] second) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(first.length); i < bound; i += SPECIES.length()) {
+            LongVector common = LongVector.fromArray(SPECIES, first, i).and(LongVector.fromArray(SPECIES, second, i));
+            if (common.compare(VectorOperators.NE, 0).anyTrue()) {
+                return true;
+            }
+        }
+        for (; i < first.length; i++) {
+            if ((first[i] & second[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Counts the set bits of every lane with shifts and masks; the Vector API of JDK 17 has no lane-wise bit count,
+     * and 64-bit lane multiplication is slow without AVX-512, so the byte counts are summed with shifts as well.
+     */
+    private static LongVector bitCount(LongVector words) {
+        LongVector pairs = words.sub(words.lanewise(VectorOperators.LSHR, 1).and(ODD_BITS));
+        LongVector nibbles = pairs.and(BIT_PAIRS).add(pairs.lanewise(VectorOperators.LSHR, 2).and(BIT_PAIRS));
+        LongVector bytes = nibbles.add(nibbles.lanewise(VectorOperators.LSHR, 4)).and(NIBBLES);
+        bytes = bytes.add(bytes.lanewise(VectorOperators.LSHR, 8));
+        bytes = bytes.add(bytes.lanewise(VectorOperators.LSHR, 16));
+        bytes = bytes.add(bytes.lanewise(VectorOperators.LSHR, 32));
+        return bytes.and(0x7f);
+    }
+}
@@ -0,0 +1,318 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+public class AdaptiveSelector {
+    // Samples every strategy needs in a bucket before the model is trusted there
+    private static final int MIN_SAMPLES = 4;
+    // Decisions after which the estimate of a strategy other than the best one is stale and retried, so that
+    // the model follows drift; the period doubles every time the retried strategy still loses
+    private static final int EXPLORATION_PERIOD = 32;
+    private static final double EWMA_WEIGHT = 0.1;
+
+    /**
+     * Ways of splitting a basket. Precomputed answers are always looked up first when a store is loaded,
+     * the model chooses between the other strategies.
+     */
+    public enum Strategy {
+        /**
+         * The precomputed answer from the loaded answer store.
+         */
+        CACHE,
+        /**
+         * A single greedy pass: companies take the remaining items largest group first, without any search.
+         */
+        GREEDY,
+        /**
+         * The heuristic search, stopping at the lower bound or after the iteration limit.
+         */
+        HEURISTIC,
+        /**
+         * The heuristic search followed by the exact solver within the exact time budget.
+         */
+        EXACT
+    }
+
+    private static final Strategy[] MODELED_STRATEGIES = {Strategy.GREEDY, Strategy.HEURISTIC, Strategy.EXACT};
+
+    /**
+     * Cheap features of a basket, computed from the catalog before splitting.
+     *
+     * @param itemCount      The number of distinct items.
+     * @param signatureCount The number of distinct sets of companies able to deliver an item.
+     * @param candidateCount The number of companies able to deliver at least one item.
+     * @param packingBound   A lower bound on the number of groups, the same whatever the strategy.
+     */
+    public record Features(int itemCount, int signatureCount, int candidateCount, int packingBound) {
+        /**
+         * Returns the bucket of baskets sharing a model: the bit lengths of the three counts.
+         *
+         * @return The bucket key.
+         */
+        public int bucket() {
+            return bitLength(itemCount) << 16 | bitLength(signatureCount) << 8 | bitLength(candidateCount);
+        }
+
+        private static int bitLength(int value) {
+            return 32 - Integer.numberOfLeadingZeros(value);
+        }
+    }
+
+    /**
+     * Decision taken for one basket and its outcome.
+     *
+     * @param features    The features of the basket.
+     * @param strategy    The strategy which produced the result.
+     * @param explored    True if the strategy was chosen to refresh the model rather than by its score.
+     * @param nanos       The time spent on the split, lookups and features included.
+     * @param groupCount  The number of delivery groups of the result.
+     * @param extraGroups The number of groups above the packing bound of the features.
+     */
+    public record Selection(Features features, Strategy strategy, boolean explored, long nanos, int groupCount, int extraGroups) {
+    }
+
+    /**
+     * Totals of the splits produced by one strategy.
+     */
+    public record StrategyMetrics(Strategy strategy, long selections, long explorations, long totalNanos, long totalExtraGroups) {
+        public long getMeanNanos() {
+            return selections == 0 ? 0 : totalNanos / selections;
+        }
+
+        public double getMeanExtraGroups() {
+            return selections == 0 ? 0 : (double) totalExtraGroups / selections;
+        }
+    }
+
+    /**
+     * Observed latency and quality of the modeled strategies for baskets of one bucket.
+     */
+    private static final class BucketModel {
+        private final long[] samples = new long[Strategy.values().length];
+        private final double[] meanNanos = new double[Strategy.values().length];
+        private final double[] meanExtraGroups = new double[Strategy.values().length];
+        private final long[] lastChosen = new long[Strategy.values().length];
+        private final long[] explorationPeriods = new long[Strategy.values().length];
+        private long decisions;
+
+        private BucketModel() {
+            Arrays.fill(explorationPeriods, EXPLORATION_PERIOD);
+        }
+    }
+
+    private final BasketSplitter basketSplitter;
+    private final DeliveryCatalog catalog;
+    private final Duration exactTimeBudget;
+    private final double nanosPerExtraGroup;
+    private final Map<Integer, BucketModel> models = new ConcurrentHashMap<>();
+    private final LongAdder[] selections = newAdders();
+    private final LongAdder[] explorations = newAdders();
+    private final LongAdder[] totalNanos = newAdders();
+    private final LongAdder[] totalExtraGroups = newAdders();
+    private volatile Consumer<Selection> selectionListener;
+
+    /**
+     * Creates a selector choosing a strategy for every basket from an online model kept per bucket of similar
+     * baskets: for each strategy, the moving averages of its latency and of its groups above the packing bound.
+     * The strategy with the lowest latency plus the price of its extra groups wins. Every strategy is sampled
+     * a few times in every bucket first. Afterwards a losing strategy is retried once its estimate is stale,
+     * and every retry it loses doubles the time until the next one, so buckets converge to the cheapest strategy
+     * while a strategy which becomes the cheapest after changes of the catalog or of the traffic still takes over.
+     *
+     * @param basketSplitter  The splitter running the strategies.
+     * @param exactTimeBudget The time the exact strategy may spend on a basket.
+     * @param extraGroupCost  The latency worth saving one delivery group, which prices quality against speed.
+     */
+    public AdaptiveSelector(BasketSplitter basketSplitter, Duration exactTimeBudget, Duration extraGroupCost) {
+        this.basketSplitter = basketSplitter;
+        this.catalog = basketSplitter.getCatalog();
+        this.exactTimeBudget = exactTimeBudget;
+        this.nanosPerExtraGroup = extraGroupCost.toNanos();
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[Strategy.values().length];
+        for (int strategy = 0; strategy < adders.length; strategy++) {
+            adders[strategy] = new LongAdder();
+        }
+        return adders;
+    }
+    /**
+     * Splits the basket with the strategy chosen for it and records the outcome in the model and the metrics.
+     *
+     * @param lines    The lines of the basket to be split.
+     * @param deadline The deadline of the caller, the exact strategy stops at the earlier of it and its budget.
+     * @return         The delivery pools together with the lower bound and the completion status.
+     */
+    SplitResult split(BasketLines lines, SearchDeadline deadline) {
+        long start = System.nanoTime();
+        Features features = computeFeatures(lines.getDistinctItems());
+        SplitResult cached = basketSplitter.lookupAnswer(lines);
+        if (cached != null) {
+            record(null, features, Strategy.CACHE, false, System.nanoTime() - start, cached);
+            return cached;
+        }
+
+        BucketModel model = models.computeIfAbsent(features.bucket(), k -> new BucketModel());
+        Strategy strategy;
+        boolean explored;
+        synchronized (model) {
+            long decision = ++model.decisions;
+            strategy = leastSampled(model);
+            explored = strategy != null;
+            if (strategy == null) {
+                Strategy best = best(model);
+                strategy = stalest(model, best, decision);
+                explored = strategy != null;
+                if (explored) {
+                    model.explorationPeriods[strategy.ordinal()] *= 2;
+                } else {
+                    strategy = best;
+                    model.explorationPeriods[best.ordinal()] = EXPLORATION_PERIOD;
+                }
+            }
+            model.lastChosen[strategy.ordinal()] = decision;
+        }
+        SplitResult result = switch (strategy) {
+            case GREEDY -> basketSplitter.splitGreedy(lines);
+            case EXACT -> basketSplitter.solve(lines, deadline.limitTo(exactTimeBudget), false);
+            default -> basketSplitter.solve(lines, deadline, false);
+        };
+        record(model, features, strategy, explored, System.nanoTime() - start, result);
+        return result;
+    }
+
+    private static Strategy leastSampled(BucketModel model) {
+        for (Strategy strategy : MODELED_STRATEGIES) {
+            if (model.samples[strategy.ordinal()] < MIN_SAMPLES) {
+                return strategy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the losing strategy to retry: the least recently chosen one among those not chosen for their exploration period.
+     *
+     * @param model    The model of the bucket.
+     * @param best     The strategy with the best score, never retried.
+     * @param decision The number of the current decision in the bucket.
+     * @return         The strategy, or null if no estimate is stale.
+     */
+    private static Strategy stalest(BucketModel model, Strategy best, long decision) {
+        Strategy oldest = null;
+        for (Strategy strategy : MODELED_STRATEGIES) {
+            int index = strategy.ordinal();
+            if (strategy != best && decision - model.lastChosen[index] >= model.explorationPeriods[index]
+                    && (oldest == null || model.lastChosen[index] < model.lastChosen[oldest.ordinal()])) {
+                oldest = strategy;
+            }
+        }
+        return oldest;
+    }
+
+    private Strategy best(BucketModel model) {
+        Strategy best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Strategy strategy : MODELED_STRATEGIES) {
+            double score = model.meanNanos[strategy.ordinal()] + nanosPerExtraGroup * model.meanExtraGroups[strategy.ordinal()];
+            if (score < bestScore) {
+                bestScore = score;
+                best = strategy;
+            }
+        }
+        return best;
+    }
+
+    private void record(BucketModel model, Features features, Strategy strategy, boolean explored, long nanos, SplitResult result) {
+        int extraGroups = Math.max(0, result.getGroupCount() - features.packingBound());
+        if (model != null) {
+            synchronized (model) {
+                int index = strategy.ordinal();
+                double weight = model.samples[index] == 0 ? 1 : EWMA_WEIGHT;
+                model.meanNanos[index] += weight * (nanos - model.meanNanos[index]);
+                model.meanExtraGroups[index] += weight * (extraGroups - model.meanExtraGroups[index]);
+                model.samples[index]++;
+            }
+        }
+        selections[strategy.ordinal()].increment();
+        if (explored) {
+            explorations[strategy.ordinal()].increment();
+        }
+        totalNanos[strategy.ordinal()].add(nanos);
+        totalExtraGroups[strategy.ordinal()].add(extraGroups);
+
+        Consumer<Selection> listener = selectionListener;
+        if (listener != null) {
+            listener.accept(new Selection(features, strategy, explored, nanos, result.getGroupCount(), extraGroups));
+        }
+    }
+    /**
+     * Computes the features of a basket in a single pass over the company masks of its items.
+     * The packing bound counts items visited from the fewest companies up whose companies are disjoint
+     * from the companies of the items counted before, like {@link DeliveryLowerBound}.
+     *
+     * @param items The distinct items of the basket.
+     * @return      The features.
+     */
+    public Features computeFeatures(List<String> items) {
+        int wordCount = Bitsets.wordCount(catalog.getCompanyCount());
+        List<long[]> masks = new ArrayList<>(items.size());
+        Set<Long> signatures = new HashSet<>();
+        long[] candidates = new long[wordCount];
+        for (String item : items) {
+            int productId = catalog.getProductId(item);
+            if (productId < 0) {
+                continue;
+            }
+            long[] mask = new long[wordCount];
+            long signature = 0;
+            for (int word = 0; word < wordCount; word++) {
+                mask[word] = catalog.getCompanyMaskWord(productId, word);
+                candidates[word] |= mask[word];
+                signature = signature * 0x9E3779B97F4A7C15L + mask[word];
+            }
+            if (Bitsets.popCount(mask) > 0) {
+                masks.add(mask);
+                signatures.add(signature);
+            }
+        }
+        masks.sort(Comparator.comparingInt(Bitsets::popCount));
+        long[] packedCompanies = new long[wordCount];
+        int packingBound = 0;
+        for (long[] mask : masks) {
+            if (!Bitsets.intersects(mask, packedCompanies)) {
+                for (int word = 0; word < wordCount; word++) {
+                    packedCompanies[word] |= mask[word];
+                }
+                packingBound++;
+            }
+        }
+        return new Features(items.size(), signatures.size(), Bitsets.popCount(candidates), packingBound);
+    }
+    /**
+     * Registers a listener called on the splitting thread after every selection, e.g. to log decisions.
+     *
+     * @param selectionListener The listener, or null to remove it.
+     */
+    public void setSelectionListener(Consumer<Selection> selectionListener) {
+        this.selectionListener = selectionListener;
+    }
+    /**
+     * Returns the totals of the splits produced by a strategy.
+     *
+     * @param strategy The strategy.
+     * @return         The metrics at the time of the call.
+     */
+    public StrategyMetrics getMetrics(Strategy strategy) {
+        int index = strategy.ordinal();
+        return new StrategyMetrics(strategy, selections[index].sum(), explorations[index].sum(), totalNanos[index].sum(),
+                totalExtraGroups[index].sum());
+    }
+
+    public int getBucketCount() {
+        return models.size();
+    }
+}
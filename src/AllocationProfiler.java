@@ -0,0 +1,194 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AllocationProfiler {
+    /**
+     * Stages of a split, in the order they run.
+     */
+    public enum Phase {
+        ANSWER_STORE, REDUCTION, PRUNING, COMPONENT_SETUP, FIRST_PHASE, LOCAL_SEARCH, EXACT_SEARCH, GROUP_ASSIGNMENT, RESULT
+    }
+
+    // Upper bounds of basket size buckets, the last bucket takes all larger baskets
+    private static final int[] BUCKET_LIMITS = {8, 32, 128, 512, Integer.MAX_VALUE};
+    private static final Phase[] PHASES = Phase.values();
+    private static final Mark NO_MARK = new Mark(null, null);
+
+    /**
+     * Allocation of all splits of baskets in one size bucket.
+     */
+    public record BucketReport(String bucket, long splitCount, Map<Phase, Long> bytesByPhase) {
+        public long getTotalBytes() {
+            long total = 0;
+            for (long bytes : bytesByPhase.values()) {
+                total += bytes;
+            }
+            return total;
+        }
+
+        public long getBytesPerSplit() {
+            return splitCount == 0 ? 0 : getTotalBytes() / splitCount;
+        }
+    }
+
+    /**
+     * Allocation of all profiled splits, bucket by bucket.
+     */
+    public record Report(List<BucketReport> buckets) {
+        @Override
+        public String toString() {
+            StringBuilder table = new StringBuilder(String.format("%-10s %8s %12s", "basket", "splits", "bytes/split"));
+            for (Phase phase : PHASES) {
+                table.append(String.format(" %16s", phase.name().toLowerCase()));
+            }
+            for (BucketReport bucket : buckets) {
+                if (bucket.splitCount() == 0) {
+                    continue;
+                }
+                table.append(String.format("%n%-10s %8d %12d", bucket.bucket(), bucket.splitCount(), bucket.getBytesPerSplit()));
+                for (Phase phase : PHASES) {
+                    table.append(String.format(" %16d", bucket.bytesByPhase().get(phase) / bucket.splitCount()));
+                }
+            }
+            return table.toString();
+        }
+    }
+
+    /**
+     * Allocation of a single split, filled by the threads working on it.
+     */
+    public static final class Split {
+        private final AllocationProfiler profiler;
+        private final int bucket;
+        private final LongAdder[] bytesByPhase = new LongAdder[PHASES.length];
+
+        private Split(AllocationProfiler profiler, int bucket) {
+            this.profiler = profiler;
+            this.bucket = bucket;
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                bytesByPhase[phase] = new LongAdder();
+            }
+        }
+        /**
+         * Starts measuring on the current thread. Every thread working on the split takes its own mark.
+         *
+         * @return The mark of the current thread.
+         */
+        public Mark mark() {
+            return new Mark(this, profiler.threadBean);
+        }
+        /**
+         * Adds the split to the totals of its bucket.
+         */
+        public void finish() {
+            profiler.splitCounts[bucket].increment();
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                profiler.bytesByPhase[bucket][phase].add(bytesByPhase[phase].sum());
+            }
+        }
+    }
+
+    /**
+     * Bytes allocated by one thread since its previous record.
+     */
+    public static final class Mark {
+        private final Split split;
+        private final com.sun.management.ThreadMXBean threadBean;
+        private long allocatedBytes;
+
+        private Mark(Split split, com.sun.management.ThreadMXBean threadBean) {
+            this.split = split;
+            this.threadBean = threadBean;
+            this.allocatedBytes = threadBean == null ? 0 : threadBean.getCurrentThreadAllocatedBytes();
+        }
+        /**
+         * Charges the bytes allocated by the current thread since the previous record to the phase.
+         *
+         * @param phase The phase which has just finished.
+         */
+        public void record(Phase phase) {
+            if (split != null) {
+                long now = threadBean.getCurrentThreadAllocatedBytes();
+                split.bytesByPhase[phase.ordinal()].add(now - allocatedBytes);
+                allocatedBytes = now;
+            }
+        }
+        /**
+         * Moves the mark to the current allocation without charging any phase, for work already recorded
+         * by marks of the same thread.
+         */
+        public void skip() {
+            if (split != null) {
+                allocatedBytes = threadBean.getCurrentThreadAllocatedBytes();
+            }
+        }
+    }
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final LongAdder[] splitCounts = new LongAdder[BUCKET_LIMITS.length];
+    private final LongAdder[][] bytesByPhase = new LongAdder[BUCKET_LIMITS.length][PHASES.length];
+
+    /**
+     * Creates a profiler charging the bytes allocated by every split to the phases of the split,
+     * aggregated by basket size. The counters come from {@code com.sun.management.ThreadMXBean}.
+     *
+     * @throws UnsupportedOperationException if the JVM does not measure thread allocation.
+     */
+    public AllocationProfiler() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean)
+                || !bean.isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException("Thread allocation is not measured by this JVM");
+        }
+        bean.setThreadAllocatedMemoryEnabled(true);
+        this.threadBean = bean;
+        for (int bucket = 0; bucket < BUCKET_LIMITS.length; bucket++) {
+            splitCounts[bucket] = new LongAdder();
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                bytesByPhase[bucket][phase] = new LongAdder();
+            }
+        }
+    }
+    /**
+     * Starts profiling a split.
+     *
+     * @param basketSize The number of items in the basket.
+     * @return           The allocation of the split.
+     */
+    public Split start(int basketSize) {
+        int bucket = 0;
+        while (basketSize > BUCKET_LIMITS[bucket]) {
+            bucket++;
+        }
+        return new Split(this, bucket);
+    }
+    /**
+     * Returns a mark which records nothing, for splits which are not profiled.
+     *
+     * @return The inactive mark.
+     */
+    public static Mark noMark() {
+        return NO_MARK;
+    }
+    /**
+     * Returns the allocation of all splits finished so far.
+     *
+     * @return The report with one entry per basket size bucket.
+     */
+    public Report getReport() {
+        List<BucketReport> buckets = new ArrayList<>();
+        for (int bucket = 0; bucket < BUCKET_LIMITS.length; bucket++) {
+            Map<Phase, Long> phases = new EnumMap<>(Phase.class);
+            for (Phase phase : PHASES) {
+                phases.put(phase, bytesByPhase[bucket][phase.ordinal()].sum());
+            }
+            buckets.add(new BucketReport(bucketName(bucket), splitCounts[bucket].sum(), phases));
+        }
+        return new Report(buckets);
+    }
+
+    private static String bucketName(int bucket) {
+        int from = bucket == 0 ? 1 : BUCKET_LIMITS[bucket - 1] + 1;
+        return BUCKET_LIMITS[bucket] == Integer.MAX_VALUE ? from + "+" : from + "-" + BUCKET_LIMITS[bucket];
+    }
+}
@@ -0,0 +1,209 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AnswerStore {
+    static final int MAGIC = 0x42534153;
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 20;
+    static final int INDEX_ENTRY_BYTES = 12;
+    // Flag of an entry whose search ran to completion
+    static final int FLAG_COMPLETED = 1;
+
+    private final DeliveryCatalog catalog;
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int dataStart;
+    private final boolean stale;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private AnswerStore(DeliveryCatalog catalog, ByteBuffer buffer, int entryCount, boolean stale) {
+        this.catalog = catalog;
+        this.buffer = buffer;
+        this.entryCount = entryCount;
+        this.dataStart = HEADER_BYTES + entryCount * INDEX_ENTRY_BYTES;
+        this.stale = stale;
+    }
+    /**
+     * Memory-maps a file written by {@link AnswerStoreBuilder}. A file built for another configuration,
+     * or with another catalog layout, is opened as a stale store which answers nothing.
+     *
+     * The file layout is a header (magic, version, configuration hash, entry count), an index of
+     * (basket hash, data offset) pairs sorted by hash, and the entries: the sorted distinct product IDs
+     * of the basket, the lower bound, the flags of the answer and the IDs of the companies delivering the basket.
+     * All values are ints. The only flag tells whether the search of the answer ran to completion.
+     *
+     * @param file    The path to the store.
+     * @param catalog The catalog the splitter works on.
+     * @return        The store.
+     * @throws IOException if the file cannot be mapped or is not an answer store.
+     */
+    public static AnswerStore open(Path file, DeliveryCatalog catalog) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an answer store: " + file);
+        }
+        if (buffer.getInt(4) != VERSION || buffer.getLong(8) != configHash(catalog)) {
+            return new AnswerStore(catalog, buffer, 0, true);
+        }
+        return new AnswerStore(catalog, buffer, buffer.getInt(16), false);
+    }
+    /**
+     * Looks up the precomputed answer for the basket. The answer stores the companies only, items are
+     * assigned to them like for a computed split, so the groups keep the order of the given basket.
+     *
+     * @param items The list of items to be split.
+     * @return      The precomputed result, or null if the basket is not in the store.
+     */
+    public SplitResult lookup(List<String> items) {
+        return lookup(BasketLines.of(items));
+    }
+    /**
+     * Looks up the precomputed answer for the basket given as lines.
+     *
+     * @param lines The lines of the basket to be split.
+     * @return      The precomputed result, or null if the basket is not in the store.
+     */
+    public SplitResult lookup(BasketLines lines) {
+        int[] productIds = canonicalBasket(catalog, lines.getDistinctItems());
+        if (productIds == null || entryCount == 0) {
+            misses.increment();
+            return null;
+        }
+        long hash = basketHash(productIds);
+        // First index entry with the basket hash, entries with equal hashes follow it
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(HEADER_BYTES + middle * INDEX_ENTRY_BYTES) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int entry = low; entry < entryCount && buffer.getLong(HEADER_BYTES + entry * INDEX_ENTRY_BYTES) == hash; entry++) {
+            int offset = dataStart + buffer.getInt(HEADER_BYTES + entry * INDEX_ENTRY_BYTES + 8);
+            if (matches(offset, productIds)) {
+                hits.increment();
+                return readAnswer(offset + 4 + 4 * productIds.length, lines);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    private boolean matches(int offset, int[] productIds) {
+        if (buffer.getInt(offset) != productIds.length) {
+            return false;
+        }
+        for (int i = 0; i < productIds.length; i++) {
+            if (buffer.getInt(offset + 4 + 4 * i) != productIds[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private SplitResult readAnswer(int offset, BasketLines lines) {
+        int lowerBound = buffer.getInt(offset);
+        boolean completed = (buffer.getInt(offset + 4) & FLAG_COMPLETED) != 0;
+        int companyCount = buffer.getInt(offset + 8);
+        Integer[] companyIds = new Integer[companyCount];
+        for (int i = 0; i < companyCount; i++) {
+            companyIds[i] = buffer.getInt(offset + 12 + 4 * i);
+        }
+        BasketMatrix basket = BasketMatrix.compile(catalog, lines.getDistinctItems(), lines.getQuantities());
+        GroupAssigner.Assignment assignment = GroupAssigner.assignOwnersDetailed(basket, Arrays.asList(companyIds));
+        return SplitResult.fromAssignment(basket, lines, assignment.owners(), lowerBound,
+                completed && (assignment.exhaustive() || assignment.groupCount() == lowerBound));
+    }
+    /**
+     * Returns the sorted distinct product IDs of the basket, which identify it regardless of item order.
+     *
+     * @param catalog The catalog the IDs refer to.
+     * @param items   The list of items.
+     * @return        The product IDs, or null if the basket holds a product missing from the catalog.
+     */
+    static int[] canonicalBasket(DeliveryCatalog catalog, List<String> items) {
+        int[] productIds = new int[items.size()];
+        for (int i = 0; i < productIds.length; i++) {
+            productIds[i] = catalog.getProductId(items.get(i));
+            if (productIds[i] < 0) {
+                return null;
+            }
+        }
+        Arrays.sort(productIds);
+        int distinct = 0;
+        for (int i = 0; i < productIds.length; i++) {
+            if (i == 0 || productIds[i] != productIds[i - 1]) {
+                productIds[distinct++] = productIds[i];
+            }
+        }
+        return Arrays.copyOf(productIds, distinct);
+    }
+
+    static long basketHash(int[] productIds) {
+        long hash = 0xcbf29ce484222325L;
+        for (int productId : productIds) {
+            hash = (hash ^ productId) * 0x100000001b3L;
+        }
+        return hash ^ hash >>> 29;
+    }
+    /**
+     * Hashes the catalog together with its product and company IDs, so that answers are only used
+     * with the configuration and the catalog layout they were computed for.
+     *
+     * @param catalog The catalog.
+     * @return        The hash of the configuration.
+     */
+    static long configHash(DeliveryCatalog catalog) {
+        long hash = 0xcbf29ce484222325L;
+        for (int companyId = 0; companyId < catalog.getCompanyCount(); companyId++) {
+            hash = hashBytes(hash, catalog.getCompanyName(companyId).getBytes(StandardCharsets.UTF_8));
+        }
+        int wordCount = Bitsets.wordCount(catalog.getCompanyCount());
+        for (int productId = 0; productId < catalog.getProductCount(); productId++) {
+            hash = hashBytes(hash, catalog.getProductName(productId).getBytes(StandardCharsets.UTF_8));
+            for (int word = 0; word < wordCount; word++) {
+                hash = (hash ^ catalog.getCompanyMaskWord(productId, word)) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private static long hashBytes(long hash, byte[] bytes) {
+        for (byte value : bytes) {
+            hash = (hash ^ (value & 0xff)) * 0x100000001b3L;
+        }
+        // Separator, so that names cannot be split differently into the same bytes
+        return (hash ^ 0xff) * 0x100000001b3L;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
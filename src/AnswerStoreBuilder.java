@@ -0,0 +1,177 @@
+import org.json.simple.JSONArray;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+
+public class AnswerStoreBuilder {
+    /**
+     * Sorted distinct product IDs of a basket, compared by value.
+     */
+    private record BasketKey(int[] productIds, long hash) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof BasketKey key && hash == key.hash && Arrays.equals(productIds, key.productIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+    }
+
+    private final BasketSplitter basketSplitter;
+    private final DeliveryCatalog catalog;
+    private final Duration exactTimeBudget;
+    private final Map<BasketKey, Long> frequencies = new HashMap<>();
+    private long skippedBaskets;
+
+    /**
+     * Creates a builder precomputing splits of the most frequent baskets with the given splitter.
+     *
+     * @param basketSplitter  The splitter holding the configuration the store is built for.
+     * @param exactTimeBudget The time the exact solver may spend on every stored basket.
+     */
+    public AnswerStoreBuilder(BasketSplitter basketSplitter, Duration exactTimeBudget) {
+        this.basketSplitter = basketSplitter;
+        this.catalog = basketSplitter.getCatalog();
+        this.exactTimeBudget = exactTimeBudget;
+    }
+    /**
+     * Counts a basket of the historical log. Baskets differing only in the order or repetition of items
+     * are counted as the same basket. Baskets with products missing from the configuration are skipped.
+     *
+     * @param items The list of items of the basket.
+     */
+    public void add(List<String> items) {
+        int[] productIds = AnswerStore.canonicalBasket(catalog, items);
+        if (productIds == null || productIds.length == 0) {
+            skippedBaskets++;
+            return;
+        }
+        frequencies.merge(new BasketKey(productIds, AnswerStore.basketHash(productIds)), 1L, Long::sum);
+    }
+    /**
+     * Counts all baskets of a log file holding one JSON array of items per line.
+     *
+     * @param basketLog The path to the log.
+     * @throws IOException if the log cannot be read or a line is not a JSON array.
+     */
+    public void addLog(Path basketLog) throws IOException {
+        JSONParser parser = new JSONParser();
+        try (BufferedReader reader = Files.newBufferedReader(basketLog, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> items = new ArrayList<>();
+                for (Object item : (JSONArray) parser.parse(line)) {
+                    items.add((String) item);
+                }
+                add(items);
+            }
+        } catch (ParseException | ClassCastException e) {
+            throw new IOException("Invalid basket log: " + basketLog, e);
+        }
+    }
+    /**
+     * Splits the most frequent baskets with the exact solver and writes them to a store file,
+     * which {@link BasketSplitter#loadAnswerStore} memory-maps.
+     *
+     * @param output     The path of the store file.
+     * @param maxEntries The maximal number of baskets in the store.
+     * @return           The number of baskets written.
+     * @throws IOException if the file cannot be written.
+     */
+    public int write(Path output, int maxEntries) throws IOException {
+        List<Map.Entry<BasketKey, Long>> ranked = new ArrayList<>(frequencies.entrySet());
+        ranked.sort(Map.Entry.<BasketKey, Long>comparingByValue().reversed()
+                .thenComparingLong(entry -> entry.getKey().hash()));
+        List<BasketKey> keys = new ArrayList<>();
+        List<SplitResult> answers = new ArrayList<>();
+        for (Map.Entry<BasketKey, Long> entry : ranked.subList(0, Math.min(maxEntries, ranked.size()))) {
+            List<String> items = new ArrayList<>();
+            for (int productId : entry.getKey().productIds()) {
+                items.add(catalog.getProductName(productId));
+            }
+            keys.add(entry.getKey());
+            answers.add(basketSplitter.split(items, exactTimeBudget));
+        }
+
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> keys.get(i).hash()));
+        int dataBytes = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            dataBytes += entryBytes(keys.get(i), answers.get(i));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(AnswerStore.HEADER_BYTES + keys.size() * AnswerStore.INDEX_ENTRY_BYTES + dataBytes);
+        buffer.putInt(AnswerStore.MAGIC).putInt(AnswerStore.VERSION).putLong(AnswerStore.configHash(catalog)).putInt(keys.size());
+        int offset = 0;
+        for (int i : order) {
+            buffer.putLong(keys.get(i).hash()).putInt(offset);
+            offset += entryBytes(keys.get(i), answers.get(i));
+        }
+        for (int i : order) {
+            int[] productIds = keys.get(i).productIds();
+            SplitResult answer = answers.get(i);
+            buffer.putInt(productIds.length);
+            for (int productId : productIds) {
+                buffer.putInt(productId);
+            }
+            buffer.putInt(answer.getLowerBound()).putInt(answer.isCompleted() ? AnswerStore.FLAG_COMPLETED : 0).putInt(answer.getGroupCount());
+            for (int group = 0; group < answer.getGroupCount(); group++) {
+                buffer.putInt(answer.getCompanyId(group));
+            }
+        }
+        Files.write(output, buffer.array());
+        return keys.size();
+    }
+
+    /**
+     * Returns the size of the data of a stored basket: product count, product IDs, lower bound, flags,
+     * company count and company IDs, all ints.
+     */
+    private static int entryBytes(BasketKey key, SplitResult answer) {
+        return 4 * (4 + key.productIds().length + answer.getGroupCount());
+    }
+
+    public int getDistinctBasketCount() {
+        return frequencies.size();
+    }
+
+    public long getSkippedBasketCount() {
+        return skippedBaskets;
+    }
+    /**
+     * Builds a store from the command line:
+     * {@code AnswerStoreBuilder <config.json> <basket log> <output> [--top N] [--budget-ms N]}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: AnswerStoreBuilder <config.json> <basket log> <output> [--top N] [--budget-ms N]");
+            System.exit(2);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 3; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        AnswerStoreBuilder builder = new AnswerStoreBuilder(new BasketSplitter(args[0]),
+                Duration.ofMillis(Long.parseLong(options.getOrDefault("--budget-ms", "1000"))));
+        builder.addLog(Paths.get(args[1]));
+        int written = builder.write(Paths.get(args[2]), Integer.parseInt(options.getOrDefault("--top", "10000")));
+        System.out.println("Distinct baskets: " + builder.getDistinctBasketCount() + ", skipped baskets: "
+                + builder.getSkippedBasketCount() + ", stored baskets: " + written);
+    }
+}
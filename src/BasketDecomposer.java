@@ -0,0 +1,62 @@
+import java.util.*;
+
+public class BasketDecomposer {
+    private BasketDecomposer() {
+    }
+    /**
+     * Splits a basket into independent components of the item-company graph.
+     * Two items belong to the same component when they are connected through companies able to deliver them,
+     * so every company covers items of a single component only and components can be split independently.
+     *
+     * @param basket             The compiled basket.
+     * @param candidateCompanies The companies taking part in the search.
+     * @return                   The items of every component, each list keeps the basket order.
+     */
+    public static List<List<String>> decompose(BasketMatrix basket, List<String> candidateCompanies) {
+        int[] parents = new int[basket.getItemCount()];
+        for (int itemIndex = 0; itemIndex < parents.length; itemIndex++) {
+            parents[itemIndex] = itemIndex;
+        }
+        for (String company : candidateCompanies) {
+            long[] coverage = basket.getCoverage(basket.getCatalog().getCompanyId(company));
+            int firstItem = Bitsets.nextSetBit(coverage, 0);
+            for (int itemIndex = Bitsets.nextSetBit(coverage, firstItem + 1); itemIndex >= 0; itemIndex = Bitsets.nextSetBit(coverage, itemIndex + 1)) {
+                union(parents, firstItem, itemIndex);
+            }
+        }
+
+        Map<Integer, List<String>> components = new LinkedHashMap<>();
+        for (int itemIndex = 0; itemIndex < parents.length; itemIndex++) {
+            components.computeIfAbsent(find(parents, itemIndex), k -> new ArrayList<>()).add(basket.getItems().get(itemIndex));
+        }
+        return new ArrayList<>(components.values());
+    }
+    /**
+     * Finds the representative of the component containing the given item, compressing the path on the way.
+     *
+     * @param parents   The union-find parent array.
+     * @param itemIndex The position of the item in the basket.
+     * @return          The position of the representative item.
+     */
+    private static int find(int[] parents, int itemIndex) {
+        while (parents[itemIndex] != itemIndex) {
+            parents[itemIndex] = parents[parents[itemIndex]];
+            itemIndex = parents[itemIndex];
+        }
+        return itemIndex;
+    }
+    /**
+     * Merges the components containing the two given items.
+     *
+     * @param parents The union-find parent array.
+     * @param first   The position of the first item in the basket.
+     * @param second  The position of the second item in the basket.
+     */
+    private static void union(int[] parents, int first, int second) {
+        int firstRoot = find(parents, first);
+        int secondRoot = find(parents, second);
+        if (firstRoot != secondRoot) {
+            parents[Math.max(firstRoot, secondRoot)] = Math.min(firstRoot, secondRoot);
+        }
+    }
+}
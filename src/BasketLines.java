@@ -0,0 +1,121 @@
+import java.util.*;
+
+public class BasketLines {
+    private final List<String> distinctItems;
+    private final int[] quantities;
+    private final int[] lineOfPosition;
+    private final int itemCount;
+
+    private BasketLines(List<String> distinctItems, int[] quantities, int[] lineOfPosition, int itemCount) {
+        this.distinctItems = distinctItems;
+        this.quantities = quantities;
+        this.lineOfPosition = lineOfPosition;
+        this.itemCount = itemCount;
+    }
+    /**
+     * Collapses repeated items of a flat basket into lines. Lines keep the order of the first occurrence
+     * of their item, while every basket position remembers its line, so that the split can be expanded
+     * back to the original basket order.
+     *
+     * @param items The list of items, possibly repeated.
+     * @return      The distinct lines of the basket.
+     */
+    public static BasketLines of(List<String> items) {
+        Map<String, Integer> lineOfItem = new HashMap<>(items.size() * 2);
+        List<String> distinctItems = new ArrayList<>();
+        int[] lineOfPosition = new int[items.size()];
+        for (int position = 0; position < items.size(); position++) {
+            Integer line = lineOfItem.putIfAbsent(items.get(position), distinctItems.size());
+            if (line == null) {
+                line = distinctItems.size();
+                distinctItems.add(items.get(position));
+            }
+            lineOfPosition[position] = line;
+        }
+        if (distinctItems.size() == items.size()) {
+            return new BasketLines(items, null, null, items.size());
+        }
+        int[] quantities = new int[distinctItems.size()];
+        for (int line : lineOfPosition) {
+            quantities[line]++;
+        }
+        return new BasketLines(distinctItems, quantities, lineOfPosition, items.size());
+    }
+    /**
+     * Makes every basket position a line of its own, repeated items included.
+     *
+     * @param items The list of items.
+     * @return      The lines of the basket, one per item.
+     */
+    public static BasketLines uncollapsed(List<String> items) {
+        return new BasketLines(items, null, null, items.size());
+    }
+    /**
+     * Creates lines from item quantities. Copies of an item follow each other in the expanded basket,
+     * in the iteration order of the map.
+     *
+     * @param itemQuantities The quantity of every item.
+     * @return               The lines of the basket.
+     * @throws IllegalArgumentException if a quantity is not positive.
+     */
+    public static BasketLines of(Map<String, Integer> itemQuantities) {
+        List<String> distinctItems = new ArrayList<>(itemQuantities.size());
+        int[] quantities = new int[itemQuantities.size()];
+        int itemCount = 0;
+        for (Map.Entry<String, Integer> entry : itemQuantities.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalArgumentException("Quantity of " + entry.getKey() + " must be positive: " + entry.getValue());
+            }
+            quantities[distinctItems.size()] = entry.getValue();
+            distinctItems.add(entry.getKey());
+            itemCount = Math.addExact(itemCount, entry.getValue());
+        }
+        if (itemCount == distinctItems.size()) {
+            return new BasketLines(distinctItems, null, null, itemCount);
+        }
+        int[] lineOfPosition = new int[itemCount];
+        int position = 0;
+        for (int line = 0; line < quantities.length; line++) {
+            Arrays.fill(lineOfPosition, position, position + quantities[line], line);
+            position += quantities[line];
+        }
+        return new BasketLines(distinctItems, quantities, lineOfPosition, itemCount);
+    }
+    /**
+     * Returns the distinct items of the basket, the items the solver works on.
+     *
+     * @return The items of all lines, in line order.
+     */
+    public List<String> getDistinctItems() {
+        return distinctItems;
+    }
+    /**
+     * Returns the quantity of every line.
+     *
+     * @return The quantities in line order, or null if every item appears once.
+     */
+    public int[] getQuantities() {
+        return quantities;
+    }
+
+    public boolean hasRepeatedItems() {
+        return quantities != null;
+    }
+    /**
+     * Returns the number of items of the expanded basket, copies included.
+     *
+     * @return The number of items.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+    /**
+     * Returns the line of the item at the given position of the expanded basket.
+     *
+     * @param position The position in the expanded basket.
+     * @return         The index of the line.
+     */
+    public int getLine(int position) {
+        return lineOfPosition == null ? position : lineOfPosition[position];
+    }
+}
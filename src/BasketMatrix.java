@@ -0,0 +1,115 @@
+import java.util.List;
+
+public class BasketMatrix {
+    private final DeliveryCatalog catalog;
+    private final List<String> items;
+    private final int[] productIds;
+    private final long[][] coverage;
+    private final int[] degrees;
+    private final int[] quantities;
+
+    private BasketMatrix(DeliveryCatalog catalog, List<String> items, int[] productIds, long[][] coverage, int[] degrees, int[] quantities) {
+        this.catalog = catalog;
+        this.items = items;
+        this.productIds = productIds;
+        this.coverage = coverage;
+        this.degrees = degrees;
+        this.quantities = quantities;
+    }
+    /**
+     * Compiles a basket into per-company bitsets over the positions of basket items.
+     * Items missing from the configuration are kept in the basket but are not covered by any company.
+     *
+     * @param catalog The compiled delivery configuration.
+     * @param items   The list of items to be delivered.
+     * @return        The compiled basket.
+     */
+    public static BasketMatrix compile(DeliveryCatalog catalog, List<String> items) {
+        return compile(catalog, items, null);
+    }
+    /**
+     * Compiles a basket of distinct items, each one standing for the given number of copies.
+     * Positions are distinct items, quantities only weigh the groups built by {@link GroupAssigner}.
+     *
+     * @param catalog    The compiled delivery configuration.
+     * @param items      The list of distinct items to be delivered.
+     * @param quantities The quantity of every item, or null if every item appears once.
+     * @return           The compiled basket.
+     */
+    public static BasketMatrix compile(DeliveryCatalog catalog, List<String> items, int[] quantities) {
+        int[] productIds = new int[items.size()];
+        int[] degrees = new int[items.size()];
+        long[][] coverage = new long[catalog.getCompanyCount()][];
+        int wordCount = Bitsets.wordCount(items.size());
+        int companyWordCount = Bitsets.wordCount(catalog.getCompanyCount());
+
+        for (int itemIndex = 0; itemIndex < items.size(); itemIndex++) {
+            int productId = catalog.getProductId(items.get(itemIndex));
+            productIds[itemIndex] = productId;
+            if (productId < 0) {
+                continue;
+            }
+            for (int companyWord = 0; companyWord < companyWordCount; companyWord++) {
+                long companyMask = catalog.getCompanyMaskWord(productId, companyWord);
+                degrees[itemIndex] += Long.bitCount(companyMask);
+                while (companyMask != 0) {
+                    int companyId = (companyWord << 6) + Long.numberOfTrailingZeros(companyMask);
+                    companyMask &= companyMask - 1;
+                    if (coverage[companyId] == null) {
+                        coverage[companyId] = new long[wordCount];
+                    }
+                    Bitsets.set(coverage[companyId], itemIndex);
+                }
+            }
+        }
+        return new BasketMatrix(catalog, items, productIds, coverage, degrees, quantities);
+    }
+
+    public DeliveryCatalog getCatalog() {
+        return catalog;
+    }
+
+    public List<String> getItems() {
+        return items;
+    }
+
+    public int getItemCount() {
+        return items.size();
+    }
+    /**
+     * Returns the catalog ID of the item at the given basket position.
+     *
+     * @param itemIndex The position of the item in the basket.
+     * @return          The product ID, or -1 if the item is not present in the configuration.
+     */
+    public int getProductId(int itemIndex) {
+        return productIds[itemIndex];
+    }
+    /**
+     * Returns the number of companies able to deliver the item at the given basket position.
+     *
+     * @param itemIndex The position of the item in the basket.
+     * @return          The number of companies, 0 if the item is not present in the configuration.
+     */
+    public int getDegree(int itemIndex) {
+        return degrees[itemIndex];
+    }
+    /**
+     * Returns the quantity of every basket position. The returned array is shared and must not be modified.
+     *
+     * @return The quantities, or null if every item appears once.
+     */
+    public int[] getQuantities() {
+        return quantities;
+    }
+    /**
+     * Returns the basket items the given company can deliver as a bitset over basket positions.
+     * The returned array is shared and must not be modified.
+     *
+     * @param companyId The ID of the company.
+     * @return          The bitset of coverable items, or null if the company cannot deliver any item of the basket.
+     */
+    public long[] getCoverage(int companyId) {
+        return coverage[companyId];
+    }
+}
@@ -0,0 +1,252 @@
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+public class BasketSplitProcessor implements Flow.Processor<List<String>, SplitResult> {
+    private final BasketSplitter basketSplitter;
+    private final Executor executor;
+    private final int parallelism;
+    private final boolean preserveOrder;
+
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super SplitResult> downstream;
+    // Set once onSubscribe of the downstream returned, no other signal may reach it before
+    private boolean subscribed;
+    private long downstreamDemand;
+    private long upstreamRequested;
+    private int inFlight;
+    private long nextSequence;
+    private long nextSequenceToEmit;
+    private final Map<Long, SplitResult> readyResults = new HashMap<>();
+    private final ArrayDeque<SplitResult> readyQueue = new ArrayDeque<>();
+    private boolean upstreamCompleted;
+    private Throwable failure;
+    private boolean terminated;
+    private boolean draining;
+
+    /**
+     * Creates a processor splitting baskets received from the upstream publisher and publishing their split results.
+     * Baskets are requested from the upstream only when the downstream subscriber has demand for their results,
+     * and at most the given number of baskets is split at the same time.
+     *
+     * @param basketSplitter The splitter used for every basket.
+     * @param executor       The executor running the splits.
+     * @param parallelism    The maximum number of baskets split at the same time.
+     * @param preserveOrder  True to publish results in the order of baskets, false to publish each result as soon as it completes.
+     */
+    public BasketSplitProcessor(BasketSplitter basketSplitter, Executor executor, int parallelism, boolean preserveOrder) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.basketSplitter = basketSplitter;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.preserveOrder = preserveOrder;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super SplitResult> subscriber) {
+        Objects.requireNonNull(subscriber);
+        boolean rejected;
+        synchronized (this) {
+            rejected = downstream != null;
+            if (!rejected) {
+                downstream = subscriber;
+            }
+        }
+        // Subscriber code never runs under the monitor
+        if (rejected) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Processor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new DownstreamSubscription());
+        synchronized (this) {
+            subscribed = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(List<String> items) {
+        long sequence;
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            upstreamRequested--;
+            inFlight++;
+            sequence = nextSequence++;
+        }
+        try {
+            executor.execute(() -> splitBasket(items, sequence));
+        } catch (RuntimeException e) {
+            onError(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = throwable;
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamCompleted = true;
+        }
+        drain();
+    }
+    /**
+     * Splits a single basket and queues its result for publishing.
+     *
+     * @param items    The list of items to be split.
+     * @param sequence The position of the basket in the upstream sequence.
+     */
+    private void splitBasket(List<String> items, long sequence) {
+        SplitResult result;
+        try {
+            result = basketSplitter.splitDetailed(items);
+        } catch (Throwable e) {
+            onError(e);
+            return;
+        }
+        synchronized (this) {
+            inFlight--;
+            if (preserveOrder) {
+                readyResults.put(sequence, result);
+            } else {
+                readyQueue.add(result);
+            }
+        }
+        drain();
+    }
+    /**
+     * Publishes ready results within the downstream demand, requests further baskets from the upstream
+     * and signals termination. Only one thread drains at a time, the others leave their work to it.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            SplitResult next = null;
+            Throwable error = null;
+            boolean complete = false;
+            long toRequest = 0;
+            Flow.Subscriber<? super SplitResult> subscriber;
+            Flow.Subscription subscription;
+            synchronized (this) {
+                subscriber = downstream;
+                subscription = upstream;
+                if (terminated || !subscribed) {
+                    draining = false;
+                    return;
+                }
+                if (failure != null) {
+                    terminated = true;
+                    error = failure;
+                } else if (downstreamDemand > 0 && (next = pollReadyResult()) != null) {
+                    downstreamDemand--;
+                } else if (upstreamCompleted && inFlight == 0 && readyCount() == 0) {
+                    terminated = true;
+                    complete = true;
+                } else if (subscription != null && !upstreamCompleted) {
+                    // Never ask for more baskets than the subscriber is ready to receive or the parallelism allows
+                    long outstanding = upstreamRequested + inFlight + readyCount();
+                    toRequest = Math.min(parallelism, downstreamDemand) - outstanding;
+                    if (toRequest > 0) {
+                        upstreamRequested += toRequest;
+                    }
+                }
+                if (next == null && error == null && !complete && toRequest <= 0) {
+                    draining = false;
+                    return;
+                }
+            }
+            if (error != null) {
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                subscriber.onError(error);
+            } else if (complete) {
+                subscriber.onComplete();
+            } else if (next != null) {
+                subscriber.onNext(next);
+            } else {
+                subscription.request(toRequest);
+            }
+        }
+    }
+
+    private SplitResult pollReadyResult() {
+        if (!preserveOrder) {
+            return readyQueue.poll();
+        }
+        SplitResult result = readyResults.remove(nextSequenceToEmit);
+        if (result != null) {
+            nextSequenceToEmit++;
+        }
+        return result;
+    }
+
+    private int readyCount() {
+        return preserveOrder ? readyResults.size() : readyQueue.size();
+    }
+
+    private class DownstreamSubscription implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                onError(new IllegalArgumentException("Requested number of results must be positive: " + n));
+                return;
+            }
+            synchronized (BasketSplitProcessor.this) {
+                downstreamDemand = downstreamDemand + n < 0 ? Long.MAX_VALUE : downstreamDemand + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription subscription;
+            synchronized (BasketSplitProcessor.this) {
+                terminated = true;
+                subscription = upstream;
+                readyResults.clear();
+                readyQueue.clear();
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
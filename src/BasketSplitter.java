@@ -1,79 +1,475 @@
 import java.io.FileReader;
+import java.io.IOException;
 import javafx.util.Pair;
 
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import org.json.simple.*;
 import org.json.simple.parser.JSONParser;
 
 public class BasketSplitter {
     private final SplitAlgorithm splitAlgorithm = new SplitAlgorithm();
     private Map<String, List<String>> deliveryConfigMap;
-    private PriorityQueue<Pair<String, Integer>> deliveryQueuePriority;
+    private DeliveryCatalog deliveryCatalog;
+    private volatile ShadowVerifier shadowVerifier;
+    private volatile AnswerStore answerStore;
+    private volatile CompletableFuture<SplitWarmup.Report> warmupFuture;
+    private volatile AllocationProfiler allocationProfiler;
+    private volatile AdaptiveSelector adaptiveSelector;
+    // Baskets with at least that many residual items have their independent components split in parallel
+    private static final int PARALLEL_DECOMPOSITION_THRESHOLD = 256;
+
+    /**
+     * Delivery pools found for a single independent component of the basket.
+     */
+    private record ComponentSplit(Map<String, List<String>> deliveryPool, int lowerBound, boolean completed) {
+    }
 
     public BasketSplitter(String absolutePathToConfigFile) {
         try {
             this.deliveryConfigMap = createDeliveryMapFromJSON(absolutePathToConfigFile);
+            this.deliveryCatalog = new CompiledCatalog(deliveryConfigMap);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
+    /**
+     * Creates a splitter which warms itself up in a background thread, so that the JIT compiles every phase
+     * before real traffic arrives. The splitter is usable right away, {@link #isReady()} tells when the warm-up
+     * has finished and traffic can be routed to it.
+     *
+     * @param absolutePathToConfigFile The path to the JSON file with the delivery configuration.
+     * @param warmup                   The warm-up to run.
+     */
+    public BasketSplitter(String absolutePathToConfigFile, SplitWarmup warmup) {
+        this(absolutePathToConfigFile);
+        CompletableFuture<SplitWarmup.Report> future = new CompletableFuture<>();
+        this.warmupFuture = future;
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(warmup.run(this));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }, "basket-splitter-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    /**
+     * Creates a splitter for an already parsed delivery configuration.
+     *
+     * @param deliveryConfigMap The structure which stores parsed JSON dictionary representing delivery configurations.
+     */
+    public BasketSplitter(Map<String, List<String>> deliveryConfigMap) {
+        this.deliveryConfigMap = deliveryConfigMap;
+        this.deliveryCatalog = new CompiledCatalog(deliveryConfigMap);
+    }
+    /**
+     * Creates a splitter working on an already built catalog, e.g. an {@link OffHeapCatalog}
+     * or a catalog of a {@link CatalogRegistry}, without keeping the parsed configuration.
+     * Every phase works on the IDs and bitsets of the catalog, the configuration is only kept as a {@link CatalogMapView}.
+     *
+     * @param deliveryCatalog The catalog of products and companies able to deliver them.
+     */
+    public BasketSplitter(DeliveryCatalog deliveryCatalog) {
+        this.deliveryCatalog = deliveryCatalog;
+        this.deliveryConfigMap = new CatalogMapView(deliveryCatalog);
+    }
+    /**
+     * Memory-maps a store of precomputed splits built by {@link AnswerStoreBuilder}. Baskets found in the store
+     * are answered from it without running the search. A store built for another configuration is ignored.
+     *
+     * @param file The path to the store.
+     * @return     The store, stale if it was built for another configuration.
+     * @throws IOException if the file cannot be mapped or is not an answer store.
+     */
+    public AnswerStore loadAnswerStore(Path file) throws IOException {
+        AnswerStore store = AnswerStore.open(file, deliveryCatalog);
+        answerStore = store.isStale() ? null : store;
+        return store;
+    }
+
+    /**
+     * Tells whether the splitter has finished its warm-up. Splitters created without a warm-up are always ready.
+     * A failed warm-up never makes the splitter ready, since its phases may not be compiled;
+     * the failure is reported by {@link #getWarmupFuture()}.
+     *
+     * @return True if the warm-up has completed normally or there was none, false otherwise.
+     */
+    public boolean isReady() {
+        CompletableFuture<SplitWarmup.Report> future = warmupFuture;
+        return future == null || future.isDone() && !future.isCompletedExceptionally();
+    }
+    /**
+     * Returns the warm-up running in the background.
+     *
+     * @return The future completed with the summary of the warm-up, or null if the splitter was created without one.
+     */
+    public CompletableFuture<SplitWarmup.Report> getWarmupFuture() {
+        return warmupFuture;
+    }
+
+    public DeliveryCatalog getCatalog() {
+        return deliveryCatalog;
+    }
     /**
      * Splits the given list of items into delivery pools using a heuristic algorithm.
      *
      * @param items The list of items to be split.
-     * @return A map representing the delivery pools.
+     * @return A map representing the delivery pools, owned by the caller.
      */
     public Map<String, List<String>> split(List<String> items){
-        fillDeliveryPriorityQueue(items);
+        return splitDetailed(items).copyDeliveryGroups();
+    }
+    /**
+     * Splits the given list of items into delivery pools and reports the lower bound computed for the basket.
+     * The search stops as soon as the number of delivery pools reaches the lower bound.
+     *
+     * @param items The list of items to be split.
+     * @return The delivery pools together with the lower bound on the number of deliveries.
+     */
+    public SplitResult splitDetailed(List<String> items){
+        return splitDetailed(BasketLines.of(items), SearchDeadline.none());
+    }
+    /**
+     * Splits a basket given as item quantities into delivery pools using a heuristic algorithm.
+     * The solver works on distinct items only, every item is listed as many times as its quantity in its pool.
+     *
+     * @param itemQuantities The quantity of every item, copies follow each other in the iteration order of the map.
+     * @return A map representing the delivery pools, owned by the caller.
+     * @throws IllegalArgumentException if a quantity is not positive.
+     */
+    public Map<String, List<String>> split(Map<String, Integer> itemQuantities){
+        return splitDetailed(itemQuantities).copyDeliveryGroups();
+    }
+    /**
+     * Splits a basket given as item quantities into delivery pools and reports the lower bound computed for the basket.
+     *
+     * @param itemQuantities The quantity of every item, copies follow each other in the iteration order of the map.
+     * @return The delivery pools together with the lower bound on the number of deliveries.
+     * @throws IllegalArgumentException if a quantity is not positive.
+     */
+    public SplitResult splitDetailed(Map<String, Integer> itemQuantities){
+        return splitDetailed(BasketLines.of(itemQuantities), SearchDeadline.none());
+    }
+    /**
+     * Splits the given list of items into delivery pools within the given time.
+     * A valid split is always returned: the result of the first phase at minimum, improved by the local search
+     * and then by the exact search for as long as time remains. The result reports whether the search completed
+     * before the deadline and the lower bound reached, which equals the number of groups once the split is proven optimal.
+     *
+     * @param items   The list of items to be split.
+     * @param timeout The time available for the search.
+     * @return The delivery pools together with the lower bound and the completion status.
+     */
+    public SplitResult split(List<String> items, Duration timeout){
+        return solve(BasketLines.of(items), SearchDeadline.after(timeout), true);
+    }
+    /**
+     * Splits the given list of items asynchronously on the given executor.
+     * When the executor queue is full the returned future fails with {@link SplitRejectedException}.
+     * Cancelling the future stops a running search at its next deadline check.
+     *
+     * @param items    The list of items to be split.
+     * @param executor The bounded executor running the split.
+     * @return A future completed with the delivery pools together with the lower bound.
+     */
+    public CompletableFuture<SplitResult> splitAsync(List<String> items, SplitExecutor executor){
+        SearchDeadline deadline = SearchDeadline.none();
+        CompletableFuture<SplitResult> future = new CompletableFuture<>();
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                deadline.cancel();
+            }
+        });
+        try {
+            executor.submit(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(splitDetailed(BasketLines.of(items), deadline));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (SplitRejectedException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    /**
+     * Splits the given basket with the strategy chosen by the adaptive selector, or with the heuristic search
+     * if adaptive selection is disabled.
+     *
+     * @param lines    The lines of the basket to be split.
+     * @param deadline The deadline of the search.
+     * @return The delivery pools together with the lower bound and the completion status.
+     */
+    private SplitResult splitDetailed(BasketLines lines, SearchDeadline deadline){
+        AdaptiveSelector selector = adaptiveSelector;
+        return selector == null ? solve(lines, deadline, true) : selector.split(lines, deadline);
+    }
+    /**
+     * Looks the basket up in the loaded answer store.
+     *
+     * @param lines The lines of the basket to be split.
+     * @return      The precomputed result, or null if no store is loaded or the basket is not in it.
+     */
+    SplitResult lookupAnswer(BasketLines lines){
+        AnswerStore store = answerStore;
+        return store == null ? null : store.lookup(lines);
+    }
+    /**
+     * Splits the basket in a single greedy pass without any search: companies able to deliver its items take
+     * the remaining items largest group first, ties going to the lowest company ID.
+     *
+     * @param lines The lines of the basket to be split.
+     * @return The delivery pools together with the lower bound.
+     */
+    SplitResult splitGreedy(BasketLines lines){
+        BasketMatrix basket = BasketMatrix.compile(deliveryCatalog, lines.getDistinctItems(), lines.getQuantities());
+        List<Integer> companies = new ArrayList<>();
+        for (int companyId = 0; companyId < deliveryCatalog.getCompanyCount(); companyId++) {
+            if (basket.getCoverage(companyId) != null) {
+                companies.add(companyId);
+            }
+        }
+        int[] owners = GroupAssigner.assignOwners(basket, companies, 0);
+        return SplitResult.fromAssignment(basket, lines, owners, DeliveryLowerBound.compute(basket), true);
+    }
+    /**
+     * Splits the given basket into delivery pools, stopping the search at the deadline.
+     * Repeated items never change which companies are needed, so every stage up to the final assignment
+     * works on distinct items; quantities only weigh the groups of the final assignment.
+     *
+     * @param lines              The lines of the basket to be split.
+     * @param deadline           The deadline of the search.
+     * @param consultAnswerStore True to answer baskets found in the loaded answer store from it.
+     * @return The delivery pools together with the lower bound and the completion status.
+     */
+    SplitResult solve(BasketLines lines, SearchDeadline deadline, boolean consultAnswerStore){
+        AllocationProfiler profiler = allocationProfiler;
+        AllocationProfiler.Split allocations = profiler == null ? null : profiler.start(lines.getItemCount());
+        List<String> items = lines.getDistinctItems();
+        AllocationProfiler.Mark allocationMark = allocations == null ? AllocationProfiler.noMark() : allocations.mark();
 
-        return splitAlgorithm.runAlgorithm(items, deliveryConfigMap, deliveryQueuePriority);
+        AnswerStore store = consultAnswerStore ? answerStore : null;
+        if (store != null) {
+            SplitResult storedResult = store.lookup(lines);
+            allocationMark.record(AllocationProfiler.Phase.ANSWER_STORE);
+            if (storedResult != null) {
+                if (allocations != null) {
+                    allocations.finish();
+                }
+                return storedResult;
+            }
+        }
+        BasketMatrix basket = BasketMatrix.compile(deliveryCatalog, items, lines.getQuantities());
+        // Companies forced by single-company items are fixed up front, the solver only sees the residual basket
+        ForcedAssignmentReducer.Reduction reduction = ForcedAssignmentReducer.reduce(basket);
+        List<String> residualItems = reduction.getResidualItems();
+        BasketMatrix residualBasket = residualItems.isEmpty() ? null : BasketMatrix.compile(deliveryCatalog, residualItems);
+        // Residual items cannot be delivered by any forced company, so both bounds add up
+        int residualLowerBound = residualBasket == null ? 0 : DeliveryLowerBound.compute(residualBasket);
+
+        boolean completed = true;
+        Set<Integer> selectedCompanies = new HashSet<>();
+        for (String company : reduction.getForcedGroups().keySet()) {
+            selectedCompanies.add(deliveryCatalog.getCompanyId(company));
+        }
+        allocationMark.record(AllocationProfiler.Phase.REDUCTION);
+        if (residualLowerBound > 0) {
+            // Dominated companies never take part in the search
+            List<String> candidateCompanies = DominancePruner.findNonDominatedCompanies(residualBasket);
+            Set<String> candidateCompanySet = new HashSet<>(candidateCompanies);
+            // Components share no company, so each one is split on its own
+            List<List<String>> components = BasketDecomposer.decompose(residualBasket, candidateCompanies);
+            allocationMark.record(AllocationProfiler.Phase.PRUNING);
+            boolean parallel = components.size() > 1 && residualItems.size() >= PARALLEL_DECOMPOSITION_THRESHOLD;
+            List<ComponentSplit> componentResults = (parallel ? components.parallelStream() : components.stream())
+                    .map(component -> splitComponent(component, candidateCompanySet, deadline, allocations))
+                    .toList();
+            // Bounds of independent components add up to a bound at least as tight as the one of the whole basket
+            int componentsLowerBound = 0;
+            for (ComponentSplit componentResult : componentResults) {
+                for (String company : componentResult.deliveryPool().keySet()) {
+                    selectedCompanies.add(deliveryCatalog.getCompanyId(company));
+                }
+                componentsLowerBound += componentResult.lowerBound();
+                completed &= componentResult.completed();
+            }
+            residualLowerBound = Math.max(residualLowerBound, componentsLowerBound);
+            // Components recorded their own allocation, also the ones run by this thread
+            allocationMark.skip();
+        }
+        // Items of the whole basket are assigned to the selected companies at once, which also lets items absorbed
+        // by forced companies move to larger groups
+        GroupAssigner.Assignment assignment = GroupAssigner.assignOwnersDetailed(basket, selectedCompanies);
+        allocationMark.record(AllocationProfiler.Phase.GROUP_ASSIGNMENT);
+        // Tied branches left unexplored make the group sizes a best effort, like a search cut by its deadline,
+        // unless the number of groups already reached the lower bound
+        int lowerBound = reduction.getForcedGroups().size() + residualLowerBound;
+        completed &= assignment.exhaustive() || assignment.groupCount() == lowerBound;
+        SplitResult result = SplitResult.fromAssignment(basket, lines, assignment.owners(), lowerBound, completed);
+
+        ShadowVerifier verifier = shadowVerifier;
+        if (verifier != null) {
+            verifier.offer(items, result);
+        }
+        allocationMark.record(AllocationProfiler.Phase.RESULT);
+        if (allocations != null) {
+            allocations.finish();
+        }
+        return result;
     }
+    /**
+     * Enables shadow verification: a sampled fraction of splits is compared with an exact answer on a background thread.
+     * A previously enabled verifier is closed.
+     *
+     * @param sampleRate    The fraction of splits to verify, between 0 and 1.
+     * @param queueCapacity The number of sampled splits which can wait for verification, further samples are dropped.
+     * @return              The verifier exposing the gap and latency metrics.
+     */
+    public ShadowVerifier enableShadowVerification(double sampleRate, int queueCapacity) {
+        ShadowVerifier verifier = new ShadowVerifier(deliveryCatalog, sampleRate, queueCapacity);
+        disableShadowVerification();
+        shadowVerifier = verifier;
+        return verifier;
+    }
+    /**
+     * Disables shadow verification and stops its background thread.
+     */
+    public void disableShadowVerification() {
+        ShadowVerifier verifier = shadowVerifier;
+        shadowVerifier = null;
+        if (verifier != null) {
+            verifier.close();
+        }
+    }
+    /**
+     * Enables adaptive selection: {@link #split(List)}, {@link #splitDetailed(List)}, their quantity overloads
+     * and {@link #splitAsync} choose a strategy for every basket from an online model of the latency and quality
+     * observed for similar baskets. Splits with an explicit timeout keep running the exact search.
+     * A previously enabled selector and its model are replaced.
+     *
+     * @param exactTimeBudget The time the exact strategy may spend on a basket.
+     * @param extraGroupCost  The latency worth saving one delivery group.
+     * @return                The selector exposing the selection metrics.
+     */
+    public AdaptiveSelector enableAdaptiveSelection(Duration exactTimeBudget, Duration extraGroupCost) {
+        AdaptiveSelector selector = new AdaptiveSelector(this, exactTimeBudget, extraGroupCost);
+        adaptiveSelector = selector;
+        return selector;
+    }
+    /**
+     * Disables adaptive selection, splits go back to the heuristic search.
+     */
+    public void disableAdaptiveSelection() {
+        adaptiveSelector = null;
+    }
+    /**
+     * Charges the bytes allocated by every following split to its phases, or stops doing so.
+     * The same profiler can be shared by several splitters. Profiling costs a few allocation counter
+     * reads per phase and a small object per split, so it is meant for diagnostics.
+     *
+     * @param profiler The profiler to report to, or null to stop profiling.
+     */
+    public void setAllocationProfiler(AllocationProfiler profiler) {
+        allocationProfiler = profiler;
+    }
+
+    /**
+     * Splits a single independent component of the basket.
+     * With a bounded deadline, time left after the local search is spent on the exact search.
+     *
+     * @param componentItems     The items of the component.
+     * @param candidateCompanies The companies taking part in the search.
+     * @param deadline           The deadline of the search.
+     * @param allocations        The allocation of the split charged to its phases, or null if it is not profiled.
+     * @return                   The delivery pools of the component together with its lower bound and the completion status.
+     */
+    private ComponentSplit splitComponent(List<String> componentItems, Set<String> candidateCompanies, SearchDeadline deadline, AllocationProfiler.Split allocations) {
+        // Components may run on other threads, each one measures its own allocation
+        AllocationProfiler.Mark allocationMark = allocations == null ? AllocationProfiler.noMark() : allocations.mark();
+        BasketMatrix component = BasketMatrix.compile(deliveryCatalog, componentItems);
+        int lowerBound = DeliveryLowerBound.compute(component);
+        if (lowerBound == 0) {
+            allocationMark.record(AllocationProfiler.Phase.COMPONENT_SETUP);
+            return new ComponentSplit(new HashMap<>(), 0, true);
+        }
+        PriorityQueue<Pair<String, Integer>> deliveryQueuePriority = createDeliveryPriorityQueue(component, candidateCompanies);
+        allocationMark.record(AllocationProfiler.Phase.COMPONENT_SETUP);
+        Map<String, List<String>> deliveryPool = splitAlgorithm.runAlgorithm(component, deliveryQueuePriority, lowerBound, deadline, allocationMark);
+        boolean completed = deliveryPool.size() == lowerBound || !deadline.isExpired();
 
+        if (deadline.isBounded() && deliveryPool.size() > lowerBound && !deadline.isExpired()) {
+            List<Integer> candidateIds = new ArrayList<>();
+            for (String company : candidateCompanies) {
+                int companyId = deliveryCatalog.getCompanyId(company);
+                if (component.getCoverage(companyId) != null) {
+                    candidateIds.add(companyId);
+                }
+            }
+            ExactSplitSolver.Solution solution = ExactSplitSolver.solve(component, candidateIds, Long.MAX_VALUE, deadline);
+            if (solution.getCompanyIds().size() < deliveryPool.size()) {
+                deliveryPool = GroupAssigner.assign(component, solution.getCompanyIds());
+            }
+            if (solution.isOptimal()) {
+                lowerBound = solution.getCompanyIds().size();
+            } else {
+                completed = false;
+            }
+            allocationMark.record(AllocationProfiler.Phase.EXACT_SEARCH);
+        }
+        return new ComponentSplit(deliveryPool, lowerBound, completed);
+    }
     /**
-     * Fills the delivery queue priority with companies and the number of items they can deliver.
+     * Creates the delivery queue priority with companies and the number of items they can deliver.
      *
-     * @param items The list of items to be delivered.
+     * @param basket             The compiled basket of items to be delivered.
+     * @param candidateCompanies The companies allowed to enter the queue.
+     * @return                   The max heap of companies ordered by the number of items they can deliver.
      */
-    private void fillDeliveryPriorityQueue(List<String> items) {
-        HashMap<String, Integer> deliveryOccurrenceCount = countNumberOfItemsForDelivery(items);
+    private PriorityQueue<Pair<String, Integer>> createDeliveryPriorityQueue(BasketMatrix basket, Set<String> candidateCompanies) {
+        HashMap<String, Integer> deliveryOccurrenceCount = countNumberOfItemsForDelivery(basket);
         try{
             PriorityQueue<Pair<String, Integer>> maxHeap = new PriorityQueue<>(Comparator.comparingInt((Pair<String, Integer> pair) -> pair.getValue()).reversed());
 
             for (Map.Entry<String, Integer> entry : deliveryOccurrenceCount.entrySet()) {
+                if (!candidateCompanies.contains(entry.getKey())) {
+                    continue;
+                }
                 maxHeap.offer(new Pair<>(entry.getKey(), entry.getValue()));
             }
 
-            deliveryQueuePriority = maxHeap;
+            return maxHeap;
         }catch (NullPointerException e){
             System.out.println("Delivery config is empty");
+            return new PriorityQueue<>();
         }
     }
     /**
-     * Counts the number of items each company can deliver.
+     * Counts the number of items each company can deliver, from the bitsets of the compiled basket
+     * instead of looking every item up again.
      *
-     * @param items The list of items to be delivered.
+     * @param basket The compiled basket of items to be delivered.
      * @return A map containing the count of items each company can deliver.
      */
-    private HashMap<String, Integer> countNumberOfItemsForDelivery(List<String> items) {
-        try {
-            HashMap<String, Integer> deliveryOccurrenceCount = new HashMap<>();
-
-            for (String item : items) {
-                List<String> companies = deliveryConfigMap.get(item);
-                if (companies != null) {
-                    for (String company : companies) {
-                        deliveryOccurrenceCount.put(company, deliveryOccurrenceCount.getOrDefault(company, 0) + 1);
-                    }
-                }
-            }
+    private HashMap<String, Integer> countNumberOfItemsForDelivery(BasketMatrix basket) {
+        HashMap<String, Integer> deliveryOccurrenceCount = new HashMap<>();
 
-            return deliveryOccurrenceCount;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+        for (int companyId = 0; companyId < deliveryCatalog.getCompanyCount(); companyId++) {
+            long[] coverage = basket.getCoverage(companyId);
+            if (coverage != null) {
+                deliveryOccurrenceCount.put(deliveryCatalog.getCompanyName(companyId), Bitsets.popCount(coverage));
+            }
         }
+        return deliveryOccurrenceCount;
     }
     /**
      * Creates a delivery map from a JSON file.
@@ -82,7 +478,7 @@ public class BasketSplitter {
      * @return A map representing the delivery configuration.
      * @throws Exception If an error occurs while parsing the JSON file.
      */
-    private Map<String, List<String>> createDeliveryMapFromJSON(String jsonFilePath) throws Exception {
+    static Map<String, List<String>> createDeliveryMapFromJSON(String jsonFilePath) throws Exception {
         if (!Files.exists(Paths.get(jsonFilePath))) {
             throw new IllegalArgumentException("File path does not exist: " + jsonFilePath);
         }
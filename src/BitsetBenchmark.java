@@ -0,0 +1,110 @@
+import java.util.Random;
+
+public class BitsetBenchmark {
+    private static final int[] WORD_COUNTS = {2, 4, 8, 16, 32, 64, 256};
+    private static final int PAIRS = 256;
+    // Results of the loops end up here, so that the JIT cannot drop them as dead code
+    private static volatile long sink;
+
+    private BitsetBenchmark() {
+    }
+    /**
+     * Measures a bitset kernel on bitsets of growing length and prints nanoseconds per operation.
+     * Run it once per kernel, so that the JIT compiles each measurement loop for a single kernel.
+     * The vector kernel needs {@code --add-modules jdk.incubator.vector} and the src-vector root on the classpath.
+     * Arguments: {@code [scalar|vector] [rounds]}, the scalar kernel and 2000 rounds by default.
+     */
+    public static void main(String[] args) {
+        boolean useVector = args.length > 0 && args[0].equals("vector");
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        BitsetKernel kernel = useVector ? Bitsets.getVectorKernel() : Bitsets.getScalarKernel();
+        if (kernel == null) {
+            System.err.println("Vector kernel is not available, run with --add-modules jdk.incubator.vector");
+            System.exit(2);
+        }
+        System.out.printf("%6s %-18s %10s%n", "words", (useVector ? "vector" : "scalar") + " kernel", "ns per op");
+        for (int wordCount : WORD_COUNTS) {
+            long[][] first = randomBitsets(wordCount, 1);
+            long[][] second = randomBitsets(wordCount, 2);
+            long[][] superset = new long[PAIRS][];
+            for (int i = 0; i < PAIRS; i++) {
+                superset[i] = first[i].clone();
+                for (int word = 0; word < wordCount; word++) {
+                    superset[i][word] |= second[i][word];
+                }
+            }
+            for (String operation : new String[]{"popCount", "intersectionCount", "andNot", "isSubset"}) {
+                System.out.printf("%6d %-18s %10.1f%n", wordCount, operation, measure(kernel, operation, first, second, superset, rounds));
+            }
+        }
+    }
+
+    private static double measure(BitsetKernel kernel, String operation, long[][] first, long[][] second, long[][] superset, int rounds) {
+        // The first half of the rounds warms the loop up, every operation has its own loop to keep the JIT profile clean
+        long start = 0;
+        for (int half = 0; half < 2; half++) {
+            start = System.nanoTime();
+            sink += switch (operation) {
+                case "popCount" -> popCountLoop(kernel, first, rounds / 2);
+                case "intersectionCount" -> intersectionCountLoop(kernel, first, second, rounds / 2);
+                case "andNot" -> andNotLoop(kernel, first, second, rounds / 2);
+                default -> isSubsetLoop(kernel, first, superset, rounds / 2);
+            };
+        }
+        return (double) (System.nanoTime() - start) / ((rounds / 2) * (long) PAIRS);
+    }
+
+    private static long popCountLoop(BitsetKernel kernel, long[][] first, int rounds) {
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < PAIRS; i++) {
+                sink += kernel.popCount(first[i]);
+            }
+        }
+        return sink;
+    }
+
+    private static long intersectionCountLoop(BitsetKernel kernel, long[][] first, long[][] second, int rounds) {
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < PAIRS; i++) {
+                sink += kernel.intersectionCount(first[i], second[i]);
+            }
+        }
+        return sink;
+    }
+
+    private static long andNotLoop(BitsetKernel kernel, long[][] first, long[][] second, int rounds) {
+        long sink = 0;
+        long[] target = new long[first[0].length];
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < PAIRS; i++) {
+                System.arraycopy(first[i], 0, target, 0, target.length);
+                kernel.andNot(target, second[i]);
+                sink += target[0];
+            }
+        }
+        return sink;
+    }
+
+    private static long isSubsetLoop(BitsetKernel kernel, long[][] first, long[][] superset, int rounds) {
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < PAIRS; i++) {
+                sink += kernel.isSubset(first[i], superset[i]) ? 1 : 0;
+            }
+        }
+        return sink;
+    }
+
+    private static long[][] randomBitsets(int wordCount, long seed) {
+        Random random = new Random(seed * 31 + wordCount);
+        long[][] bitsets = new long[PAIRS][wordCount];
+        for (long[] bitset : bitsets) {
+            for (int word = 0; word < wordCount; word++) {
+                bitset[word] = random.nextLong();
+            }
+        }
+        return bitsets;
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * Bulk operations over bitsets stored as {@code long[]}, see {@link Bitsets}.
+ * Both bitsets passed to a method have the same length.
+ */
+public interface BitsetKernel {
+    int popCount(long[] words);
+
+    int intersectionCount(long[] first, long[] second);
+
+    void andNot(long[] target, long[] mask);
+
+    boolean isSubset(long[] subset, long[] superset);
+
+    boolean intersects(long[] first, long[] second);
+}
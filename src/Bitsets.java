@@ -0,0 +1,240 @@
+public class Bitsets {
+    // Bitsets shorter than that are processed word by word, setting up vectors does not pay off for them
+    private static final int VECTOR_MIN_WORDS = Integer.getInteger("basketsplitter.vectorMinWords", 16);
+    private static final BitsetKernel SCALAR_KERNEL = new BitsetKernel() {
+        @Override
+        public int popCount(long[] words) {
+            return scalarPopCount(words);
+        }
+
+        @Override
+        public int intersectionCount(long[] first, long[] second) {
+            return scalarIntersectionCount(first, second);
+        }
+
+        @Override
+        public void andNot(long[] target, long[] mask) {
+            scalarAndNot(target, mask);
+        }
+
+        @Override
+        public boolean isSubset(long[] subset, long[] superset) {
+            return scalarIsSubset(subset, superset);
+        }
+
+        @Override
+        public boolean intersects(long[] first, long[] second) {
+            return scalarIntersects(first, second);
+        }
+    };
+    private static final BitsetKernel VECTOR_KERNEL = loadVectorKernel();
+
+    private Bitsets() {
+    }
+    /**
+     * Loads the kernel built on the incubating Vector API. It is only available when the JVM runs with
+     * {@code --add-modules jdk.incubator.vector} and VectorBitsetKernel is compiled, and can be turned off
+     * with {@code -Dbasketsplitter.vector=false}.
+     *
+     * @return The vector kernel, or null if it is not available.
+     */
+    private static BitsetKernel loadVectorKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("basketsplitter.vector", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (BitsetKernel) Class.forName("VectorBitsetKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    public static BitsetKernel getScalarKernel() {
+        return SCALAR_KERNEL;
+    }
+    /**
+     * Returns the kernel built on the Vector API, used for bitsets of at least
+     * {@code basketsplitter.vectorMinWords} words (16 by default).
+     *
+     * @return The vector kernel, or null if it is not available.
+     */
+    public static BitsetKernel getVectorKernel() {
+        return VECTOR_KERNEL;
+    }
+    /**
+     * Returns the number of 64-bit words needed to store the given number of bits.
+     *
+     * @param bitCount The number of bits.
+     * @return         The number of words.
+     */
+    public static int wordCount(int bitCount) {
+        return (bitCount + 63) >>> 6;
+    }
+    /**
+     * Sets the bit with the given index.
+     *
+     * @param words The bitset.
+     * @param index The index of the bit to set.
+     */
+    public static void set(long[] words, int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+    /**
+     * Checks whether the bit with the given index is set.
+     *
+     * @param words The bitset.
+     * @param index The index of the bit to check.
+     * @return      True if the bit is set, false otherwise.
+     */
+    public static boolean get(long[] words, int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+    /**
+     * Counts the set bits.
+     *
+     * @param words The bitset.
+     * @return      The number of set bits.
+     */
+    public static int popCount(long[] words) {
+        if (VECTOR_KERNEL != null && words.length >= VECTOR_MIN_WORDS) {
+            return VECTOR_KERNEL.popCount(words);
+        }
+        return scalarPopCount(words);
+    }
+    /**
+     * Counts the bits set in both bitsets.
+     *
+     * @param first  The first bitset.
+     * @param second The second bitset, as long as the first one.
+     * @return       The number of common bits.
+     */
+    public static int intersectionCount(long[] first, long[] second) {
+        if (VECTOR_KERNEL != null && first.length >= VECTOR_MIN_WORDS) {
+            return VECTOR_KERNEL.intersectionCount(first, second);
+        }
+        return scalarIntersectionCount(first, second);
+    }
+    /**
+     * Clears in the target bitset every bit set in the mask.
+     *
+     * @param target The bitset to modify.
+     * @param mask   The bits to clear, as long as the target.
+     */
+    public static void andNot(long[] target, long[] mask) {
+        if (VECTOR_KERNEL != null && target.length >= VECTOR_MIN_WORDS) {
+            VECTOR_KERNEL.andNot(target, mask);
+        } else {
+            scalarAndNot(target, mask);
+        }
+    }
+    /**
+     * Checks whether every bit set in the first bitset is also set in the second one.
+     *
+     * @param subset   The bitset which should be contained.
+     * @param superset The bitset which should contain the first one.
+     * @return         True if the first bitset is a subset of the second one, false otherwise.
+     */
+    public static boolean isSubset(long[] subset, long[] superset) {
+        if (VECTOR_KERNEL != null && subset.length >= VECTOR_MIN_WORDS) {
+            return VECTOR_KERNEL.isSubset(subset, superset);
+        }
+        return scalarIsSubset(subset, superset);
+    }
+    /**
+     * Checks whether the two bitsets have at least one common bit.
+     *
+     * @param first  The first bitset.
+     * @param second The second bitset.
+     * @return       True if the bitsets intersect, false otherwise.
+     */
+    public static boolean intersects(long[] first, long[] second) {
+        if (VECTOR_KERNEL != null && first.length >= VECTOR_MIN_WORDS) {
+            return VECTOR_KERNEL.intersects(first, second);
+        }
+        return scalarIntersects(first, second);
+    }
+
+    /**
+     * Sums the weights of the bits set in both bitsets.
+     *
+     * @param first   The first bitset.
+     * @param second  The second bitset.
+     * @param weights The weight of every bit index.
+     * @return        The total weight of the intersection.
+     */
+    public static int weightedIntersectionCount(long[] first, long[] second, int[] weights) {
+        int total = 0;
+        for (int word = 0; word < first.length; word++) {
+            long common = first[word] & second[word];
+            while (common != 0) {
+                total += weights[(word << 6) + Long.numberOfTrailingZeros(common)];
+                common &= common - 1;
+            }
+        }
+        return total;
+    }
+
+    private static int scalarPopCount(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static int scalarIntersectionCount(long[] first, long[] second) {
+        int count = 0;
+        for (int i = 0; i < first.length; i++) {
+            count += Long.bitCount(first[i] & second[i]);
+        }
+        return count;
+    }
+
+    private static void scalarAndNot(long[] target, long[] mask) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] &= ~mask[i];
+        }
+    }
+
+    private static boolean scalarIsSubset(long[] subset, long[] superset) {
+        for (int i = 0; i < subset.length; i++) {
+            if ((subset[i] & ~superset[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean scalarIntersects(long[] first, long[] second) {
+        for (int i = 0; i < first.length; i++) {
+            if ((first[i] & second[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Returns the index of the first set bit at or after the given index.
+     *
+     * @param words     The bitset.
+     * @param fromIndex The index to start from.
+     * @return          The index of the next set bit, or -1 if there is none.
+     */
+    public static int nextSetBit(long[] words, int fromIndex) {
+        int wordIndex = fromIndex >>> 6;
+        if (wordIndex >= words.length) {
+            return -1;
+        }
+        long word = words[wordIndex] & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+    }
+}
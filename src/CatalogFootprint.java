@@ -0,0 +1,111 @@
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+public class CatalogFootprint {
+    // Sizes of a 64-bit JVM with compressed references and 8-byte object alignment
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int STRING = 24;
+    private static final int HASH_MAP = 48;
+    private static final int HASH_MAP_NODE = 32;
+    private static final int ARRAY_LIST = 24;
+
+    /**
+     * Memory used by the parsed configuration map compared with the off-heap catalog built from it.
+     */
+    public record Report(int productCount, long mapHeapBytes, long offHeapBytes, long offHeapCatalogHeapBytes) {
+        @Override
+        public String toString() {
+            return String.format("Products: %d%n"
+                            + "Parsed configuration map (heap): %d bytes, %.1f bytes per product%n"
+                            + "Off-heap catalog: %d bytes off-heap + %d bytes heap, %.1f bytes per product",
+                    productCount, mapHeapBytes, perProduct(mapHeapBytes),
+                    offHeapBytes, offHeapCatalogHeapBytes, perProduct(offHeapBytes + offHeapCatalogHeapBytes));
+        }
+
+        private double perProduct(long bytes) {
+            return productCount == 0 ? 0 : (double) bytes / productCount;
+        }
+    }
+
+    private CatalogFootprint() {
+    }
+    /**
+     * Compares the heap taken by the parsed configuration map with the memory used by the off-heap catalog.
+     *
+     * @param deliveryConfigMap The structure which stores parsed JSON dictionary representing delivery configurations.
+     * @param offHeapCatalog    The off-heap catalog built from the same configuration.
+     * @return                  The footprint report.
+     */
+    public static Report compare(Map<String, List<String>> deliveryConfigMap, OffHeapCatalog offHeapCatalog) {
+        return new Report(deliveryConfigMap.size(), estimateMapHeapBytes(deliveryConfigMap), offHeapCatalog.getOffHeapBytes(), estimateCatalogHeapBytes(offHeapCatalog));
+    }
+    /**
+     * Estimates the heap retained by the parsed configuration map. Every company name in every list counts
+     * as a separate String, which is how the JSON parser creates them.
+     *
+     * @param deliveryConfigMap The structure which stores parsed JSON dictionary representing delivery configurations.
+     * @return                  The estimated number of bytes.
+     */
+    public static long estimateMapHeapBytes(Map<String, List<String>> deliveryConfigMap) {
+        long bytes = hashMapBytes(deliveryConfigMap.size());
+        for (Map.Entry<String, List<String>> entry : deliveryConfigMap.entrySet()) {
+            bytes += HASH_MAP_NODE + stringBytes(entry.getKey());
+            List<String> companies = entry.getValue();
+            bytes += ARRAY_LIST + align(ARRAY_HEADER + (long) REFERENCE * Math.max(10, companies.size()));
+            for (String company : companies) {
+                bytes += stringBytes(company);
+            }
+        }
+        return bytes;
+    }
+    /**
+     * Estimates the heap retained by the off-heap catalog: its company dictionary and the buffer objects.
+     *
+     * @param catalog The off-heap catalog.
+     * @return        The estimated number of bytes.
+     */
+    public static long estimateCatalogHeapBytes(OffHeapCatalog catalog) {
+        // Catalog object, five buffer objects with their cleaners and the company map
+        long bytes = align(OBJECT_HEADER + 13 * REFERENCE) + 5 * 128 + HASH_MAP;
+        for (int companyId = 0; companyId < catalog.getCompanyCount(); companyId++) {
+            String company = catalog.getCompanyName(companyId);
+            bytes += HASH_MAP_NODE + 16 + stringBytes(company) + align(ARRAY_HEADER + (long) catalog.getCompanyNameJson(companyId).length) + 2 * REFERENCE;
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the heap a single {@link CatalogRegistry} tenant keeps for itself: the arrays of its catalog
+     * and its perfect hash tables. Product names, encoded names, company bitsets and the company dictionary
+     * are shared with the other tenants and not counted.
+     *
+     * @param catalog The catalog of the tenant.
+     * @return        The estimated number of bytes.
+     */
+    public static long estimateTenantHeapBytes(DeliveryCatalog catalog) {
+        // Catalog object and the product name, bitset and encoded name arrays
+        long bytes = align(OBJECT_HEADER + 8 * REFERENCE) + 3 * arrayBytes(REFERENCE, catalog.getProductCount());
+        // Perfect hash tables: fingerprints, displacements and remapped slots, about 8 bytes per product
+        return bytes + 3 * ARRAY_HEADER + 8L * catalog.getProductCount();
+    }
+
+    private static long hashMapBytes(int size) {
+        long tableSize = Long.highestOneBit(Math.max(1, (long) (size / 0.75)) * 2 - 1);
+        return HASH_MAP + align(ARRAY_HEADER + REFERENCE * tableSize);
+    }
+
+    static long stringBytes(String value) {
+        return STRING + arrayBytes(1, value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    static long arrayBytes(int elementBytes, int length) {
+        return align(ARRAY_HEADER + (long) elementBytes * length);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
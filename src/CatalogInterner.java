@@ -0,0 +1,157 @@
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+public class CatalogInterner {
+    /**
+     * Companies known to the interner at some point. IDs never change, later dictionaries only append companies,
+     * so a catalog keeps the dictionary it was compiled with and catalogs compiled in between share it.
+     */
+    static final class CompanyDictionary {
+        private final Map<String, Integer> companyIds;
+        private final String[] companyNames;
+        private final byte[][] companyNamesJson;
+
+        private CompanyDictionary(Map<String, Integer> companyIds, String[] companyNames, byte[][] companyNamesJson) {
+            this.companyIds = companyIds;
+            this.companyNames = companyNames;
+            this.companyNamesJson = companyNamesJson;
+        }
+
+        int getCompanyId(String companyName) {
+            Integer companyId = companyIds.get(companyName);
+            return companyId == null ? -1 : companyId;
+        }
+
+        String getCompanyName(int companyId) {
+            return companyNames[companyId];
+        }
+
+        byte[] getCompanyNameJson(int companyId) {
+            return companyNamesJson[companyId];
+        }
+
+        int getCompanyCount() {
+            return companyNames.length;
+        }
+    }
+
+    private final Map<String, Integer> companyIds = new HashMap<>();
+    private final List<String> companyNames = new ArrayList<>();
+    private final List<byte[]> companyNamesJson = new ArrayList<>();
+    private CompanyDictionary companyDictionary = new CompanyDictionary(Map.of(), new String[0], new byte[0][]);
+    // Canonical instances shared by all catalogs; weak, so that they go away with the last catalog using them
+    private final Map<String, WeakReference<String>> sharedNames = new WeakHashMap<>();
+    private final Map<String, WeakReference<byte[]>> sharedNamesJson = new WeakHashMap<>();
+    // Bitsets by the hash of their content
+    private final Map<Integer, List<WeakReference<long[]>>> sharedMasks = new HashMap<>();
+    private long internedBytes;
+
+    /**
+     * Creates an interner giving catalogs compiled with it one company ID space and shared instances
+     * of product names, encoded product names and company bitsets. Companies are never forgotten,
+     * so that an ID means the same company in every catalog; the other instances are only kept
+     * while a catalog uses them.
+     */
+    public CatalogInterner() {
+    }
+    /**
+     * Returns the ID of a company, giving the next free ID to companies seen for the first time.
+     *
+     * @param companyName The name of the company.
+     * @return            The company ID.
+     */
+    synchronized int registerCompany(String companyName) {
+        Integer companyId = companyIds.get(companyName);
+        if (companyId == null) {
+            companyId = companyNames.size();
+            companyIds.put(companyName, companyId);
+            companyNames.add(companyName);
+            companyNamesJson.add(SplitResultJsonWriter.encodeJsonString(companyName));
+            internedBytes += CatalogFootprint.stringBytes(companyName) + CatalogFootprint.arrayBytes(1, companyNamesJson.get(companyId).length);
+        }
+        return companyId;
+    }
+    /**
+     * Returns the dictionary of all companies registered so far.
+     *
+     * @return The dictionary, the same instance until another company is registered.
+     */
+    synchronized CompanyDictionary getCompanyDictionary() {
+        if (companyDictionary.getCompanyCount() != companyNames.size()) {
+            companyDictionary = new CompanyDictionary(Map.copyOf(companyIds), companyNames.toArray(new String[0]),
+                    companyNamesJson.toArray(new byte[0][]));
+        }
+        return companyDictionary;
+    }
+    /**
+     * Returns the canonical instance of a product name.
+     *
+     * @param productName The name of the product.
+     * @return            The instance used by all catalogs.
+     */
+    synchronized String internProductName(String productName) {
+        WeakReference<String> reference = sharedNames.get(productName);
+        String canonical = reference == null ? null : reference.get();
+        if (canonical == null) {
+            canonical = productName;
+            sharedNames.put(canonical, new WeakReference<>(canonical));
+            internedBytes += CatalogFootprint.stringBytes(canonical);
+        }
+        return canonical;
+    }
+    /**
+     * Returns the canonical encoded form of a product name, see {@link DeliveryCatalog#getProductNameJson(int)}.
+     *
+     * @param productName The canonical instance of the product name.
+     * @return            The quoted JSON string encoded in UTF-8, shared and not to be modified.
+     */
+    synchronized byte[] internProductNameJson(String productName) {
+        WeakReference<byte[]> reference = sharedNamesJson.get(productName);
+        byte[] canonical = reference == null ? null : reference.get();
+        if (canonical == null) {
+            canonical = SplitResultJsonWriter.encodeJsonString(productName);
+            sharedNamesJson.put(productName, new WeakReference<>(canonical));
+            internedBytes += CatalogFootprint.arrayBytes(1, canonical.length);
+        }
+        return canonical;
+    }
+    /**
+     * Returns the canonical instance of a company bitset.
+     *
+     * @param mask The bitset, which must not be modified afterwards.
+     * @return     The equal bitset used by all catalogs.
+     */
+    synchronized long[] internMask(long[] mask) {
+        List<WeakReference<long[]>> references = sharedMasks.computeIfAbsent(Arrays.hashCode(mask), k -> new ArrayList<>(1));
+        for (WeakReference<long[]> reference : references) {
+            long[] canonical = reference.get();
+            if (Arrays.equals(canonical, mask)) {
+                return canonical;
+            }
+        }
+        references.add(new WeakReference<>(mask));
+        internedBytes += CatalogFootprint.arrayBytes(8, mask.length);
+        return mask;
+    }
+    /**
+     * Drops the bitsets no catalog uses anymore. Keys of the other maps go away on their own.
+     */
+    synchronized void purge() {
+        for (Iterator<List<WeakReference<long[]>>> references = sharedMasks.values().iterator(); references.hasNext(); ) {
+            List<WeakReference<long[]>> bucket = references.next();
+            bucket.removeIf(reference -> reference.get() == null);
+            if (bucket.isEmpty()) {
+                references.remove();
+            }
+        }
+    }
+    /**
+     * Returns the estimated heap of all instances this interner created or adopted, whether still used or not.
+     * The difference before and after compiling a catalog is what the catalog added to the shared instances.
+     *
+     * @return The estimated number of bytes.
+     */
+    public synchronized long getInternedBytes() {
+        return internedBytes;
+    }
+}
@@ -0,0 +1,80 @@
+import java.util.*;
+
+public class CatalogMapView extends AbstractMap<String, List<String>> {
+    private final DeliveryCatalog catalog;
+    private final int companyWordCount;
+
+    /**
+     * Creates a read-only view of a catalog in the shape of the parsed JSON configuration,
+     * so that code working with product names can run on any catalog implementation.
+     * Lists of companies are built on every lookup and are not backed by the catalog.
+     *
+     * @param catalog The catalog to view.
+     */
+    public CatalogMapView(DeliveryCatalog catalog) {
+        this.catalog = catalog;
+        this.companyWordCount = Bitsets.wordCount(catalog.getCompanyCount());
+    }
+
+    @Override
+    public List<String> get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int productId = catalog.getProductId((String) key);
+        return productId < 0 ? null : companiesOf(productId);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && catalog.getProductId((String) key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return catalog.getProductCount();
+    }
+
+    @Override
+    public Set<Entry<String, List<String>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, List<String>>> iterator() {
+                return new Iterator<>() {
+                    private int productId;
+
+                    @Override
+                    public boolean hasNext() {
+                        return productId < catalog.getProductCount();
+                    }
+
+                    @Override
+                    public Entry<String, List<String>> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = productId++;
+                        return new SimpleImmutableEntry<>(catalog.getProductName(current), companiesOf(current));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return catalog.getProductCount();
+            }
+        };
+    }
+
+    private List<String> companiesOf(int productId) {
+        List<String> companies = new ArrayList<>();
+        for (int word = 0; word < companyWordCount; word++) {
+            long mask = catalog.getCompanyMaskWord(productId, word);
+            while (mask != 0) {
+                companies.add(catalog.getCompanyName((word << 6) + Long.numberOfTrailingZeros(mask)));
+                mask &= mask - 1;
+            }
+        }
+        return Collections.unmodifiableList(companies);
+    }
+}
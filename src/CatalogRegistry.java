@@ -0,0 +1,193 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CatalogRegistry {
+    /**
+     * Snapshot of the load and hit counters of a single tenant.
+     */
+    public record TenantMetrics(String tenant, boolean loaded, long loadCount, long hitCount, long evictionCount,
+                                long lastLoadNanos, long estimatedHeapBytes) {
+    }
+
+    /**
+     * Loads the delivery configuration of a tenant.
+     */
+    @FunctionalInterface
+    public interface ConfigLoader {
+        Map<String, List<String>> load() throws Exception;
+    }
+
+    private static final class Tenant {
+        private final String name;
+        private final ConfigLoader loader;
+        private volatile BasketSplitter splitter;
+        private volatile long estimatedHeapBytes;
+        private volatile long lastLoadNanos;
+        private final LongAdder loads = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        private Tenant(String name, ConfigLoader loader) {
+            this.name = name;
+            this.loader = loader;
+        }
+    }
+
+    private final long memoryBudgetBytes;
+    private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+    // Loaded tenants in access order, the eldest one is evicted first; guarded by itself
+    private final LinkedHashMap<String, Tenant> loadedTenants = new LinkedHashMap<>(16, 0.75f, true);
+    private long loadedHeapBytes;
+    // Company IDs, names and bitsets shared by all tenants
+    private final CatalogInterner interner = new CatalogInterner();
+
+    /**
+     * Creates a registry serving many named catalogs from one process. Catalogs are loaded on first use and
+     * the least recently used ones are evicted when the estimated heap of loaded catalogs exceeds the budget.
+     * The most recently used catalog always stays loaded, even if it alone exceeds the budget.
+     * All catalogs share one company ID space and the same instances of product names, encoded names
+     * and company bitsets; a parsed configuration is dropped as soon as its catalog is compiled.
+     *
+     * @param memoryBudgetBytes The estimated heap which loaded catalogs may take, in bytes.
+     */
+    public CatalogRegistry(long memoryBudgetBytes) {
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudgetBytes);
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+    /**
+     * Registers a tenant whose configuration is read from a JSON file on first use.
+     *
+     * @param tenant                   The name of the tenant, e.g. a store region.
+     * @param absolutePathToConfigFile The path to the JSON file with the delivery configuration.
+     */
+    public void register(String tenant, String absolutePathToConfigFile) {
+        register(tenant, () -> BasketSplitter.createDeliveryMapFromJSON(absolutePathToConfigFile));
+    }
+    /**
+     * Registers a tenant whose configuration is produced by the given loader on first use.
+     *
+     * @param tenant The name of the tenant, e.g. a store region.
+     * @param loader The loader of the delivery configuration.
+     */
+    public void register(String tenant, ConfigLoader loader) {
+        if (tenants.putIfAbsent(tenant, new Tenant(tenant, loader)) != null) {
+            throw new IllegalArgumentException("Tenant is already registered: " + tenant);
+        }
+    }
+    /**
+     * Returns the splitter of the given tenant, loading its catalog if it is not loaded yet.
+     * A splitter returned before its tenant got evicted keeps working, it is only no longer cached.
+     *
+     * @param tenant The name of the tenant.
+     * @return       The splitter working on the catalog of the tenant.
+     * @throws IllegalArgumentException if the tenant is not registered.
+     * @throws RuntimeException         if the configuration of the tenant cannot be loaded.
+     */
+    public BasketSplitter getSplitter(String tenant) {
+        Tenant entry = tenants.get(tenant);
+        if (entry == null) {
+            throw new IllegalArgumentException("Unknown tenant: " + tenant);
+        }
+        BasketSplitter splitter = entry.splitter;
+        if (splitter == null) {
+            synchronized (entry) {
+                splitter = entry.splitter;
+                if (splitter == null) {
+                    splitter = load(entry);
+                    admit(entry);
+                    return splitter;
+                }
+            }
+        }
+        entry.hits.increment();
+        synchronized (loadedTenants) {
+            loadedTenants.get(tenant);
+        }
+        return splitter;
+    }
+
+    private BasketSplitter load(Tenant entry) {
+        long start = System.nanoTime();
+        CompiledCatalog catalog;
+        long sharedBytes;
+        try {
+            Map<String, List<String>> deliveryConfigMap = entry.loader.load();
+            synchronized (interner) {
+                interner.purge();
+                long internedBefore = interner.getInternedBytes();
+                catalog = new CompiledCatalog(deliveryConfigMap, interner);
+                // Instances this tenant added to the shared ones count as its own
+                sharedBytes = interner.getInternedBytes() - internedBefore;
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Cannot load the catalog of tenant " + entry.name, e);
+        }
+        BasketSplitter splitter = new BasketSplitter(catalog);
+        entry.estimatedHeapBytes = CatalogFootprint.estimateTenantHeapBytes(catalog) + sharedBytes;
+        entry.lastLoadNanos = System.nanoTime() - start;
+        entry.loads.increment();
+        entry.splitter = splitter;
+        return splitter;
+    }
+
+    private void admit(Tenant entry) {
+        synchronized (loadedTenants) {
+            loadedTenants.put(entry.name, entry);
+            loadedHeapBytes += entry.estimatedHeapBytes;
+            Iterator<Tenant> eldest = loadedTenants.values().iterator();
+            while (loadedHeapBytes > memoryBudgetBytes && loadedTenants.size() > 1) {
+                Tenant evicted = eldest.next();
+                eldest.remove();
+                loadedHeapBytes -= evicted.estimatedHeapBytes;
+                evicted.splitter = null;
+                evicted.evictions.increment();
+            }
+        }
+    }
+    /**
+     * Returns the load and hit counters of the given tenant.
+     *
+     * @param tenant The name of the tenant.
+     * @return       The snapshot of the counters.
+     * @throws IllegalArgumentException if the tenant is not registered.
+     */
+    public TenantMetrics getMetrics(String tenant) {
+        Tenant entry = tenants.get(tenant);
+        if (entry == null) {
+            throw new IllegalArgumentException("Unknown tenant: " + tenant);
+        }
+        return new TenantMetrics(entry.name, entry.splitter != null, entry.loads.sum(), entry.hits.sum(),
+                entry.evictions.sum(), entry.lastLoadNanos, entry.estimatedHeapBytes);
+    }
+    /**
+     * Returns the counters of all registered tenants, ordered by tenant name.
+     *
+     * @return The snapshots of the counters.
+     */
+    public List<TenantMetrics> getMetrics() {
+        List<TenantMetrics> metrics = new ArrayList<>();
+        for (String tenant : new TreeSet<>(tenants.keySet())) {
+            metrics.add(getMetrics(tenant));
+        }
+        return metrics;
+    }
+
+    public int getLoadedTenantCount() {
+        synchronized (loadedTenants) {
+            return loadedTenants.size();
+        }
+    }
+
+    public long getLoadedHeapBytes() {
+        synchronized (loadedTenants) {
+            return loadedHeapBytes;
+        }
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.*;
+
+public class CompiledCatalog implements DeliveryCatalog {
+    private final PerfectHashIndex productIndex;
+    private final CatalogInterner.CompanyDictionary companies;
+    private final String[] productNames;
+    private final long[][] companyMasks;
+    private final byte[][] productNamesJson;
+
+    /**
+     * Compiles the delivery configuration into dense product and company IDs.
+     * Product IDs are the slots of a minimal perfect hash over product names, so every lookup takes a single probe.
+     * Every product keeps the set of its allowed companies as a bitset over company IDs.
+     *
+     * @param deliveryConfigMap The structure which stores parsed JSON dictionary representing delivery configurations.
+     */
+    public CompiledCatalog(Map<String, List<String>> deliveryConfigMap) {
+        this(deliveryConfigMap, null);
+    }
+    /**
+     * Compiles the delivery configuration with the company IDs of the given interner, sharing product names,
+     * encoded names and company bitsets with the other catalogs compiled with it. The configuration is not
+     * referenced by the catalog and can be dropped afterwards.
+     *
+     * @param deliveryConfigMap The structure which stores parsed JSON dictionary representing delivery configurations.
+     * @param interner          The interner shared by the catalogs, or null to compile a catalog of its own.
+     */
+    public CompiledCatalog(Map<String, List<String>> deliveryConfigMap, CatalogInterner interner) {
+        productIndex = PerfectHashIndex.build(new ArrayList<>(deliveryConfigMap.keySet()));
+        productNames = new String[productIndex.size()];
+        CatalogInterner companyInterner = interner == null ? new CatalogInterner() : interner;
+        for (Map.Entry<String, List<String>> entry : deliveryConfigMap.entrySet()) {
+            productNames[productIndex.lookup(entry.getKey())] = interner == null ? entry.getKey() : interner.internProductName(entry.getKey());
+            for (String company : entry.getValue()) {
+                companyInterner.registerCompany(company);
+            }
+        }
+        companies = companyInterner.getCompanyDictionary();
+        int wordCount = Bitsets.wordCount(companies.getCompanyCount());
+        companyMasks = new long[productNames.length][];
+        for (int productId = 0; productId < productNames.length; productId++) {
+            long[] mask = new long[wordCount];
+            for (String company : deliveryConfigMap.get(productNames[productId])) {
+                Bitsets.set(mask, companies.getCompanyId(company));
+            }
+            companyMasks[productId] = interner == null ? mask : interner.internMask(mask);
+        }
+        // Names are encoded once, so that results are serialized by copying bytes only
+        productNamesJson = new byte[productNames.length][];
+        for (int productId = 0; productId < productNames.length; productId++) {
+            productNamesJson[productId] = interner == null
+                    ? SplitResultJsonWriter.encodeJsonString(productNames[productId])
+                    : interner.internProductNameJson(productNames[productId]);
+        }
+    }
+    /**
+     * Returns the ID of the given product.
+     *
+     * @param productName The name of the product.
+     * @return            The product ID, or -1 if the product is not present in the configuration.
+     */
+    @Override
+    public int getProductId(String productName) {
+        int productId = productIndex.lookup(productName);
+        // The fingerprint rejects almost every unknown name, the stored name makes the answer certain
+        return productId >= 0 && productNames[productId].equals(productName) ? productId : -1;
+    }
+    /**
+     * Returns the ID of the given company. A catalog sharing its interner also knows the companies
+     * of catalogs compiled before it, which deliver none of its products.
+     *
+     * @param companyName The name of the company.
+     * @return            The company ID, or -1 if the company is unknown to the catalog.
+     */
+    @Override
+    public int getCompanyId(String companyName) {
+        return companies.getCompanyId(companyName);
+    }
+
+    @Override
+    public String getProductName(int productId) {
+        return productNames[productId];
+    }
+
+    @Override
+    public String getCompanyName(int companyId) {
+        return companies.getCompanyName(companyId);
+    }
+
+    /**
+     * Returns the product name as a quoted JSON string encoded in UTF-8.
+     * The returned array is shared and must not be modified.
+     *
+     * @param productId The ID of the product.
+     * @return          The encoded product name.
+     */
+    @Override
+    public byte[] getProductNameJson(int productId) {
+        return productNamesJson[productId];
+    }
+    /**
+     * Returns the company name as a quoted JSON string encoded in UTF-8.
+     * The returned array is shared and must not be modified.
+     *
+     * @param companyId The ID of the company.
+     * @return          The encoded company name.
+     */
+    @Override
+    public byte[] getCompanyNameJson(int companyId) {
+        return companies.getCompanyNameJson(companyId);
+    }
+
+    @Override
+    public int getProductCount() {
+        return productNames.length;
+    }
+
+    @Override
+    public int getCompanyCount() {
+        return companies.getCompanyCount();
+    }
+    @Override
+    public long getCompanyMaskWord(int productId, int wordIndex) {
+        return companyMasks[productId][wordIndex];
+    }
+    /**
+     * Returns the set of companies allowed to deliver the given product as a bitset over company IDs.
+     * The returned array is shared and must not be modified.
+     *
+     * @param productId The ID of the product.
+     * @return          The bitset of allowed companies.
+     */
+    public long[] getCompanyMask(int productId) {
+        return companyMasks[productId];
+    }
+    /**
+     * Returns the time it took to build the perfect hash index of product names.
+     *
+     * @return The build time in nanoseconds.
+     */
+    public long getIndexBuildTimeNanos() {
+        return productIndex.getBuildTimeNanos();
+    }
+}
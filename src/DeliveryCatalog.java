@@ -0,0 +1,72 @@
+import java.nio.ByteBuffer;
+
+public interface DeliveryCatalog {
+    /**
+     * Returns the ID of the given product.
+     *
+     * @param productName The name of the product.
+     * @return            The product ID, or -1 if the product is not present in the configuration.
+     */
+    int getProductId(String productName);
+    /**
+     * Returns the ID of the given company.
+     *
+     * @param companyName The name of the company.
+     * @return            The company ID, or -1 if the company is not present in the configuration.
+     */
+    int getCompanyId(String companyName);
+
+    String getProductName(int productId);
+
+    String getCompanyName(int companyId);
+
+    int getProductCount();
+
+    int getCompanyCount();
+    /**
+     * Returns a 64-bit word of the bitset of companies allowed to deliver the given product.
+     * Bit {@code i} of word {@code w} stands for the company with ID {@code 64 * w + i}.
+     *
+     * @param productId The ID of the product.
+     * @param wordIndex The index of the word, lower than {@code Bitsets.wordCount(getCompanyCount())}.
+     * @return          The word of the company bitset.
+     */
+    long getCompanyMaskWord(int productId, int wordIndex);
+    /**
+     * Returns the product name as a quoted JSON string encoded in UTF-8.
+     * The returned array must not be modified.
+     *
+     * @param productId The ID of the product.
+     * @return          The encoded product name.
+     */
+    byte[] getProductNameJson(int productId);
+    /**
+     * Returns the length of the encoded product name, see {@link #getProductNameJson(int)}.
+     * Catalogs which do not keep encoded names as arrays answer without building one.
+     *
+     * @param productId The ID of the product.
+     * @return          The number of bytes of the encoded product name.
+     */
+    default int getProductNameJsonLength(int productId) {
+        return getProductNameJson(productId).length;
+    }
+    /**
+     * Copies the encoded product name into the buffer at its position, see {@link #getProductNameJson(int)}.
+     * Catalogs which do not keep encoded names as arrays copy them without building one.
+     *
+     * @param productId The ID of the product.
+     * @param buffer    The buffer to write to.
+     * @throws java.nio.BufferOverflowException If the buffer has not enough room for the name.
+     */
+    default void putProductNameJson(int productId, ByteBuffer buffer) {
+        buffer.put(getProductNameJson(productId));
+    }
+    /**
+     * Returns the company name as a quoted JSON string encoded in UTF-8.
+     * The returned array must not be modified.
+     *
+     * @param companyId The ID of the company.
+     * @return          The encoded company name.
+     */
+    byte[] getCompanyNameJson(int companyId);
+}
@@ -0,0 +1,55 @@
+public class DeliveryLowerBound {
+    private DeliveryLowerBound() {
+    }
+    /**
+     * Computes a cheap lower bound on the number of delivery groups needed for the given basket.
+     * Items are visited from the most constrained (fewest allowed companies) to the least constrained one,
+     * and an item is packed whenever none of its companies is shared with a previously packed item.
+     * Packed items pairwise have no common company, so every one of them needs its own delivery group.
+     * Items with a single allowed company are visited first, so every forced company is counted as well.
+     * Degrees and company bitsets come from the compiled basket and its catalog, no item is looked up by name.
+     *
+     * @param basket The compiled basket of items to be delivered.
+     * @return       The minimum number of delivery groups any valid split of the basket must contain.
+     */
+    public static int compute(BasketMatrix basket) {
+        DeliveryCatalog catalog = basket.getCatalog();
+        int itemCount = basket.getItemCount();
+        // Items by increasing degree with a counting sort, degrees are bounded by the number of companies
+        int maxDegree = 0;
+        for (int itemIndex = 0; itemIndex < itemCount; itemIndex++) {
+            maxDegree = Math.max(maxDegree, basket.getDegree(itemIndex));
+        }
+        int[] degreeStarts = new int[maxDegree + 2];
+        for (int itemIndex = 0; itemIndex < itemCount; itemIndex++) {
+            degreeStarts[basket.getDegree(itemIndex) + 1]++;
+        }
+        for (int degree = 0; degree <= maxDegree; degree++) {
+            degreeStarts[degree + 1] += degreeStarts[degree];
+        }
+        int[] order = new int[itemCount];
+        for (int itemIndex = 0; itemIndex < itemCount; itemIndex++) {
+            order[degreeStarts[basket.getDegree(itemIndex)]++] = itemIndex;
+        }
+
+        long[] usedCompanies = new long[Bitsets.wordCount(catalog.getCompanyCount())];
+        int lowerBound = 0;
+        for (int itemIndex : order) {
+            if (basket.getDegree(itemIndex) == 0) {
+                continue;
+            }
+            int productId = basket.getProductId(itemIndex);
+            boolean disjoint = true;
+            for (int word = 0; word < usedCompanies.length && disjoint; word++) {
+                disjoint = (catalog.getCompanyMaskWord(productId, word) & usedCompanies[word]) == 0;
+            }
+            if (disjoint) {
+                for (int word = 0; word < usedCompanies.length; word++) {
+                    usedCompanies[word] |= catalog.getCompanyMaskWord(productId, word);
+                }
+                lowerBound++;
+            }
+        }
+        return lowerBound;
+    }
+}
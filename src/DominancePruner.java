@@ -0,0 +1,47 @@
+import java.util.*;
+
+public class DominancePruner {
+    private DominancePruner() {
+    }
+    /**
+     * Finds companies of the basket which are not dominated by any other company.
+     * A company is dominated when the items it can deliver are a subset of the items another company can deliver.
+     * Such a company is never needed in a minimum split, and its group could always be moved to the dominating company,
+     * so dropping it cannot make the largest group smaller either. For identical sets of items only one company is kept.
+     *
+     * @param basket The compiled basket.
+     * @return       The names of non-dominated companies, ordered by the number of items they can deliver (descending).
+     */
+    public static List<String> findNonDominatedCompanies(BasketMatrix basket) {
+        DeliveryCatalog catalog = basket.getCatalog();
+        List<Integer> candidates = new ArrayList<>();
+        int[] itemCounts = new int[catalog.getCompanyCount()];
+        for (int companyId = 0; companyId < catalog.getCompanyCount(); companyId++) {
+            long[] coverage = basket.getCoverage(companyId);
+            if (coverage != null) {
+                itemCounts[companyId] = Bitsets.popCount(coverage);
+                candidates.add(companyId);
+            }
+        }
+        // A dominating company covers at least as many items, so it is always visited before the companies it dominates
+        candidates.sort(Comparator.comparingInt((Integer companyId) -> itemCounts[companyId]).reversed().thenComparingInt(companyId -> companyId));
+
+        List<long[]> keptCoverages = new ArrayList<>();
+        List<String> keptCompanies = new ArrayList<>();
+        for (int companyId : candidates) {
+            long[] coverage = basket.getCoverage(companyId);
+            boolean dominated = false;
+            for (long[] keptCoverage : keptCoverages) {
+                if (Bitsets.isSubset(coverage, keptCoverage)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                keptCoverages.add(coverage);
+                keptCompanies.add(catalog.getCompanyName(companyId));
+            }
+        }
+        return keptCompanies;
+    }
+}
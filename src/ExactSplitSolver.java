@@ -0,0 +1,203 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+public class ExactSplitSolver {
+    /**
+     * Set of companies covering the basket, together with the information whether it is proven minimal.
+     */
+    public static class Solution {
+        private final List<Integer> companyIds;
+        private final boolean optimal;
+
+        private Solution(List<Integer> companyIds, boolean optimal) {
+            this.companyIds = companyIds;
+            this.optimal = optimal;
+        }
+        /**
+         * Returns the IDs of companies covering every coverable basket item.
+         *
+         * @return The company IDs.
+         */
+        public List<Integer> getCompanyIds() {
+            return companyIds;
+        }
+
+        public boolean isOptimal() {
+            return optimal;
+        }
+    }
+
+    private final int[] candidates;
+    private final long[][] coverages;
+    private final long[][] itemCompanies;
+    private final int[] itemsByDegree;
+    // Number of search nodes visited between two deadline checks
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    private final long nodeBudget;
+    private final SearchDeadline deadline;
+    private long visitedNodes;
+    private int[] bestCover;
+    private int bestSize;
+
+    private ExactSplitSolver(BasketMatrix basket, List<Integer> candidateCompanyIds, long nodeBudget, SearchDeadline deadline) {
+        this.candidates = candidateCompanyIds.stream().mapToInt(Integer::intValue).toArray();
+        this.coverages = new long[candidates.length][];
+        this.itemCompanies = new long[basket.getItemCount()][Bitsets.wordCount(candidates.length)];
+        this.nodeBudget = nodeBudget;
+        this.deadline = deadline;
+
+        int[] degrees = new int[basket.getItemCount()];
+        for (int candidate = 0; candidate < candidates.length; candidate++) {
+            coverages[candidate] = basket.getCoverage(candidates[candidate]);
+            for (int itemIndex = Bitsets.nextSetBit(coverages[candidate], 0); itemIndex >= 0; itemIndex = Bitsets.nextSetBit(coverages[candidate], itemIndex + 1)) {
+                Bitsets.set(itemCompanies[itemIndex], candidate);
+                degrees[itemIndex]++;
+            }
+        }
+        this.itemsByDegree = IntStream.range(0, basket.getItemCount())
+                .boxed()
+                .sorted(Comparator.comparingInt(itemIndex -> degrees[itemIndex]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+    /**
+     * Finds the minimum number of companies able to deliver every coverable item of the basket with a branch and bound search.
+     * The search branches on the most constrained uncovered item and prunes branches which cannot beat the best cover
+     * according to the disjoint-items packing bound. It stops after visiting the given number of search nodes.
+     *
+     * @param basket              The compiled basket.
+     * @param candidateCompanyIds The IDs of companies allowed in the cover, typically the non-dominated ones.
+     * @param nodeBudget          The maximum number of search nodes to visit.
+     * @return                    The best cover found and whether it is proven minimal.
+     */
+    public static Solution solve(BasketMatrix basket, List<Integer> candidateCompanyIds, long nodeBudget) {
+        return solve(basket, candidateCompanyIds, nodeBudget, SearchDeadline.none());
+    }
+    /**
+     * Finds the minimum number of companies able to deliver every coverable item of the basket,
+     * stopping after the given number of search nodes or at the deadline, whichever comes first.
+     *
+     * @param basket              The compiled basket.
+     * @param candidateCompanyIds The IDs of companies allowed in the cover, typically the non-dominated ones.
+     * @param nodeBudget          The maximum number of search nodes to visit.
+     * @param deadline            The deadline of the search.
+     * @return                    The best cover found and whether it is proven minimal.
+     */
+    public static Solution solve(BasketMatrix basket, List<Integer> candidateCompanyIds, long nodeBudget, SearchDeadline deadline) {
+        ExactSplitSolver solver = new ExactSplitSolver(basket, candidateCompanyIds, nodeBudget, deadline);
+        long[] uncovered = new long[Bitsets.wordCount(basket.getItemCount())];
+        for (long[] coverage : solver.coverages) {
+            for (int i = 0; i < uncovered.length; i++) {
+                uncovered[i] |= coverage[i];
+            }
+        }
+        solver.greedyCover(uncovered.clone());
+        boolean complete = solver.search(uncovered, new int[solver.candidates.length], 0);
+
+        List<Integer> companyIds = new ArrayList<>();
+        for (int candidate : solver.bestCover) {
+            companyIds.add(solver.candidates[candidate]);
+        }
+        return new Solution(companyIds, complete);
+    }
+    /**
+     * Seeds the search with a greedy cover, so that a cover is available even when the node budget runs out early.
+     *
+     * @param uncovered The bitset of coverable items, consumed by the call.
+     */
+    private void greedyCover(long[] uncovered) {
+        int[] cover = new int[candidates.length];
+        int size = 0;
+        while (true) {
+            int bestCandidate = -1;
+            int bestGain = 0;
+            for (int candidate = 0; candidate < candidates.length; candidate++) {
+                int gain = Bitsets.intersectionCount(coverages[candidate], uncovered);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    bestCandidate = candidate;
+                }
+            }
+            if (bestCandidate < 0) {
+                break;
+            }
+            Bitsets.andNot(uncovered, coverages[bestCandidate]);
+            cover[size++] = bestCandidate;
+        }
+        bestCover = Arrays.copyOf(cover, size);
+        bestSize = size;
+    }
+    /**
+     * Visits a search node.
+     *
+     * @param uncovered The bitset of items which are not covered yet.
+     * @param chosen    The candidates chosen on the path to the node.
+     * @param depth     The number of chosen candidates.
+     * @return          True if the subtree was searched completely, false if the node budget or the time ran out.
+     */
+    private boolean search(long[] uncovered, int[] chosen, int depth) {
+        if (++visitedNodes > nodeBudget) {
+            return false;
+        }
+        if (visitedNodes % DEADLINE_CHECK_INTERVAL == 0 && deadline.isExpired()) {
+            return false;
+        }
+        int branchItem = -1;
+        int branchDegree = Integer.MAX_VALUE;
+        for (int itemIndex = Bitsets.nextSetBit(uncovered, 0); itemIndex >= 0; itemIndex = Bitsets.nextSetBit(uncovered, itemIndex + 1)) {
+            int degree = Bitsets.popCount(itemCompanies[itemIndex]);
+            if (degree < branchDegree) {
+                branchDegree = degree;
+                branchItem = itemIndex;
+            }
+        }
+        if (branchItem < 0) {
+            bestSize = depth;
+            bestCover = Arrays.copyOf(chosen, depth);
+            return true;
+        }
+        if (depth + packingBound(uncovered) >= bestSize) {
+            return true;
+        }
+
+        long[] branchCompanies = itemCompanies[branchItem];
+        List<Integer> branches = new ArrayList<>();
+        for (int candidate = Bitsets.nextSetBit(branchCompanies, 0); candidate >= 0; candidate = Bitsets.nextSetBit(branchCompanies, candidate + 1)) {
+            branches.add(candidate);
+        }
+        // Candidates covering more uncovered items are tried first to find a good cover early
+        branches.sort(Comparator.comparingInt((Integer candidate) -> Bitsets.intersectionCount(coverages[candidate], uncovered)).reversed());
+
+        boolean complete = true;
+        for (int candidate : branches) {
+            long[] remaining = uncovered.clone();
+            Bitsets.andNot(remaining, coverages[candidate]);
+            chosen[depth] = candidate;
+            if (!search(remaining, chosen, depth + 1)) {
+                complete = false;
+                break;
+            }
+        }
+        return complete;
+    }
+    /**
+     * Counts uncovered items which pairwise share no candidate company, each of them needs a separate company.
+     *
+     * @param uncovered The bitset of items which are not covered yet.
+     * @return          The lower bound on the number of companies needed for the uncovered items.
+     */
+    private int packingBound(long[] uncovered) {
+        long[] usedCompanies = new long[Bitsets.wordCount(candidates.length)];
+        int bound = 0;
+        for (int itemIndex : itemsByDegree) {
+            if (Bitsets.get(uncovered, itemIndex) && !Bitsets.intersects(itemCompanies[itemIndex], usedCompanies)) {
+                for (int i = 0; i < usedCompanies.length; i++) {
+                    usedCompanies[i] |= itemCompanies[itemIndex][i];
+                }
+                bound++;
+            }
+        }
+        return bound;
+    }
+}
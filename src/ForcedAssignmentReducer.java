@@ -0,0 +1,83 @@
+import java.util.*;
+
+public class ForcedAssignmentReducer {
+    /**
+     * Result of the reduction: delivery groups fixed by forced choices and the items left for the solver.
+     */
+    public static class Reduction {
+        private final Map<String, List<String>> forcedGroups;
+        private final List<String> residualItems;
+
+        private Reduction(Map<String, List<String>> forcedGroups, List<String> residualItems) {
+            this.forcedGroups = forcedGroups;
+            this.residualItems = residualItems;
+        }
+
+        public Map<String, List<String>> getForcedGroups() {
+            return forcedGroups;
+        }
+
+        public List<String> getResidualItems() {
+            return residualItems;
+        }
+    }
+
+    private ForcedAssignmentReducer() {
+    }
+    /**
+     * Pre-assigns items which can be delivered by a single company only.
+     * Such a company is part of every valid split, so it absorbs every other basket item it can deliver.
+     * Degrees do not change when items are absorbed, so a single pass over the basket finds every forced company:
+     * items with one company which are still residual when visited force it, and its coverage is then
+     * cleared from the residual items.
+     *
+     * @param basket The compiled basket of distinct items to be delivered.
+     * @return       The forced delivery groups and the residual items which still need to be split.
+     */
+    public static Reduction reduce(BasketMatrix basket) {
+        DeliveryCatalog catalog = basket.getCatalog();
+        List<String> items = basket.getItems();
+        Map<String, List<String>> forcedGroups = new LinkedHashMap<>();
+        long[] residual = new long[Bitsets.wordCount(items.size())];
+        for (int itemIndex = 0; itemIndex < items.size(); itemIndex++) {
+            Bitsets.set(residual, itemIndex);
+        }
+
+        for (int itemIndex = 0; itemIndex < items.size(); itemIndex++) {
+            if (basket.getDegree(itemIndex) != 1 || !Bitsets.get(residual, itemIndex)) {
+                continue;
+            }
+            int companyId = findOnlyCompany(catalog, basket.getProductId(itemIndex));
+            long[] coverage = basket.getCoverage(companyId);
+            List<String> absorbedItems = new ArrayList<>();
+            for (int absorbed = Bitsets.nextSetBit(coverage, 0); absorbed >= 0; absorbed = Bitsets.nextSetBit(coverage, absorbed + 1)) {
+                if (Bitsets.get(residual, absorbed)) {
+                    absorbedItems.add(items.get(absorbed));
+                }
+            }
+            Bitsets.andNot(residual, coverage);
+            forcedGroups.put(catalog.getCompanyName(companyId), absorbedItems);
+        }
+
+        List<String> residualItems = new ArrayList<>();
+        for (int itemIndex = Bitsets.nextSetBit(residual, 0); itemIndex >= 0; itemIndex = Bitsets.nextSetBit(residual, itemIndex + 1)) {
+            residualItems.add(items.get(itemIndex));
+        }
+        return new Reduction(forcedGroups, residualItems);
+    }
+    /**
+     * Finds the company of a product deliverable by a single company.
+     *
+     * @param catalog   The compiled delivery configuration.
+     * @param productId The ID of the product.
+     * @return          The ID of the first company able to deliver the product.
+     */
+    private static int findOnlyCompany(DeliveryCatalog catalog, int productId) {
+        for (int word = 0; ; word++) {
+            long companyMask = catalog.getCompanyMaskWord(productId, word);
+            if (companyMask != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(companyMask);
+            }
+        }
+    }
+}
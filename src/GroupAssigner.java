@@ -0,0 +1,246 @@
+import java.util.*;
+
+public class GroupAssigner {
+    // Maximum number of tied alternatives explored per basket before ties are broken by company order
+    private static final int MAX_TIE_BRANCHES = 64;
+
+    /**
+     * Assignment of basket items to companies, kept as the order in which companies took their items.
+     */
+    private static class Plan {
+        private final int[] companyIds;
+        private final int[] groupSizes;
+
+        private Plan(int[] companyIds, int[] groupSizes) {
+            this.companyIds = companyIds;
+            this.groupSizes = groupSizes;
+        }
+
+        private boolean isBetterThan(Plan other) {
+            return Arrays.compare(groupSizes, other.groupSizes) > 0;
+        }
+    }
+
+    /**
+     * Company assigned to every basket position.
+     *
+     * @param owners     The company ID assigned to every basket position, or -1 for items none of the companies can deliver.
+     * @param groupCount The number of companies which took items.
+     * @param exhaustive True if every tied alternative was evaluated, false if the cap on tied branches cut the evaluation,
+     *                   in which case the group sizes may not be lexicographically maximal.
+     */
+    public record Assignment(int[] owners, int groupCount, boolean exhaustive) {
+    }
+
+    /**
+     * Tied branches left to the evaluation of a basket.
+     */
+    private static class TieBudget {
+        private int branches;
+        private boolean truncated;
+
+        private TieBudget(int branches) {
+            this.branches = branches;
+        }
+    }
+
+    private GroupAssigner() {
+    }
+    /**
+     * Assigns every basket item to one of the given companies so that the vector of group sizes,
+     * sorted from the largest group, is lexicographically maximal.
+     * In such an assignment the largest group always takes every item its company can deliver,
+     * so the companies are chosen one by one by the number of remaining items they cover.
+     * Items of a basket compiled with quantities count with their quantity.
+     * When several companies cover the same number of items, every alternative is evaluated
+     * and the one leading to larger following groups wins, up to 64 tied branches per basket.
+     * Tied companies whose remaining items are pairwise identical or disjoint lead to the same group sizes
+     * in any order, so they are not branched over.
+     * Past that cap the remaining ties go to the company with the lowest ID, so the result is only guaranteed
+     * to be lexicographically maximal when {@link #assignOwnersDetailed(BasketMatrix, Collection)} reports it exhaustive.
+     * Companies left without items are not part of the result.
+     *
+     * @param basket     The compiled basket.
+     * @param companyIds The IDs of companies selected for the delivery.
+     * @return           A map representing the delivery pools, each list keeps the basket order.
+     */
+    public static Map<String, List<String>> assign(BasketMatrix basket, Collection<Integer> companyIds) {
+        int[] owners = assignOwners(basket, companyIds);
+        Map<String, List<String>> deliveryPool = new HashMap<>();
+        for (int itemIndex = 0; itemIndex < owners.length; itemIndex++) {
+            if (owners[itemIndex] >= 0) {
+                String company = basket.getCatalog().getCompanyName(owners[itemIndex]);
+                deliveryPool.computeIfAbsent(company, k -> new ArrayList<>()).add(basket.getItems().get(itemIndex));
+            }
+        }
+        return deliveryPool;
+    }
+    /**
+     * Assigns every basket item to one of the given companies, see {@link #assign(BasketMatrix, Collection)}.
+     *
+     * @param basket     The compiled basket.
+     * @param companyIds The IDs of companies selected for the delivery.
+     * @return           The company ID assigned to every basket position, or -1 for items none of the companies can deliver.
+     */
+    public static int[] assignOwners(BasketMatrix basket, Collection<Integer> companyIds) {
+        return assignOwners(basket, companyIds, MAX_TIE_BRANCHES);
+    }
+    /**
+     * Assigns every basket item to one of the given companies, see {@link #assign(BasketMatrix, Collection)},
+     * and reports whether the cap on tied branches cut the evaluation.
+     *
+     * @param basket     The compiled basket.
+     * @param companyIds The IDs of companies selected for the delivery.
+     * @return           The company assigned to every basket position together with the exhaustiveness of the evaluation.
+     */
+    public static Assignment assignOwnersDetailed(BasketMatrix basket, Collection<Integer> companyIds) {
+        return assign(basket, companyIds, MAX_TIE_BRANCHES);
+    }
+    /**
+     * Assigns every basket item to one of the given companies, exploring at most the given number of tied branches.
+     * Without any branch, ties go to the company with the lowest ID and the assignment is a single greedy pass.
+     *
+     * @param basket         The compiled basket.
+     * @param companyIds     The IDs of companies selected for the delivery.
+     * @param maxTieBranches The number of tied alternatives which can be explored.
+     * @return               The company ID assigned to every basket position, or -1 for items none of the companies can deliver.
+     */
+    static int[] assignOwners(BasketMatrix basket, Collection<Integer> companyIds, int maxTieBranches) {
+        return assign(basket, companyIds, maxTieBranches).owners();
+    }
+
+    private static Assignment assign(BasketMatrix basket, Collection<Integer> companyIds, int maxTieBranches) {
+        List<long[]> coverages = new ArrayList<>();
+        List<Integer> companies = new ArrayList<>(companyIds);
+        companies.sort(Comparator.naturalOrder());
+        for (int companyId : companies) {
+            long[] coverage = basket.getCoverage(companyId);
+            coverages.add(coverage == null ? new long[Bitsets.wordCount(basket.getItemCount())] : coverage);
+        }
+
+        long[] remaining = new long[Bitsets.wordCount(basket.getItemCount())];
+        for (long[] coverage : coverages) {
+            for (int i = 0; i < remaining.length; i++) {
+                remaining[i] |= coverage[i];
+            }
+        }
+        TieBudget budget = new TieBudget(maxTieBranches);
+        Plan plan = plan(coverages, basket.getQuantities(), remaining, new boolean[coverages.size()], budget);
+
+        int[] owners = new int[basket.getItemCount()];
+        Arrays.fill(owners, -1);
+        // Companies chosen earlier win the items they share with later ones
+        for (int i = plan.companyIds.length - 1; i >= 0; i--) {
+            long[] coverage = coverages.get(plan.companyIds[i]);
+            for (int itemIndex = Bitsets.nextSetBit(coverage, 0); itemIndex >= 0; itemIndex = Bitsets.nextSetBit(coverage, itemIndex + 1)) {
+                owners[itemIndex] = companies.get(plan.companyIds[i]);
+            }
+        }
+        return new Assignment(owners, plan.companyIds.length, !budget.truncated);
+    }
+    /**
+     * Chooses companies for the remaining items, the company covering most remaining items goes first.
+     *
+     * @param coverages  The bitsets of items each selected company can deliver.
+     * @param quantities The quantity of every basket position, or null if every item appears once.
+     * @param remaining  The bitset of items which are not assigned yet, consumed by the call.
+     * @param used       The flags of companies which already took their items, consumed by the call.
+     * @param budget     The tied branches which can still be explored, flagged when ties were left unexplored.
+     * @return           The order of companies and the sizes of their groups.
+     */
+    private static Plan plan(List<long[]> coverages, int[] quantities, long[] remaining, boolean[] used, TieBudget budget) {
+        int[] companyOrder = new int[coverages.size()];
+        int[] groupSizes = new int[coverages.size()];
+        int steps = 0;
+
+        while (true) {
+            int bestSize = 0;
+            List<Integer> tied = new ArrayList<>();
+            for (int company = 0; company < coverages.size(); company++) {
+                if (used[company]) {
+                    continue;
+                }
+                int size = quantities == null
+                        ? Bitsets.intersectionCount(coverages.get(company), remaining)
+                        : Bitsets.weightedIntersectionCount(coverages.get(company), remaining, quantities);
+                if (size > bestSize) {
+                    bestSize = size;
+                    tied.clear();
+                }
+                if (size == bestSize && size > 0) {
+                    tied.add(company);
+                }
+            }
+            if (bestSize == 0) {
+                break;
+            }
+
+            int chosen = tied.get(0);
+            boolean branching = tied.size() > 1 && !areInterchangeable(coverages, tied, remaining);
+            if (branching && budget.branches <= 0) {
+                budget.truncated = true;
+            }
+            if (branching && budget.branches > 0) {
+                // Tied companies lead to different remaining items, the rest of the plan decides between them
+                Plan bestTail = null;
+                for (int candidate : tied) {
+                    if (budget.branches-- <= 0) {
+                        budget.truncated = true;
+                        break;
+                    }
+                    long[] remainingCopy = remaining.clone();
+                    boolean[] usedCopy = used.clone();
+                    Bitsets.andNot(remainingCopy, coverages.get(candidate));
+                    usedCopy[candidate] = true;
+                    Plan tail = plan(coverages, quantities, remainingCopy, usedCopy, budget);
+                    if (bestTail == null || tail.isBetterThan(bestTail)) {
+                        bestTail = tail;
+                        chosen = candidate;
+                    }
+                }
+                companyOrder[steps] = chosen;
+                groupSizes[steps] = bestSize;
+                steps++;
+                System.arraycopy(bestTail.companyIds, 0, companyOrder, steps, bestTail.companyIds.length);
+                System.arraycopy(bestTail.groupSizes, 0, groupSizes, steps, bestTail.groupSizes.length);
+                steps += bestTail.companyIds.length;
+                break;
+            }
+            Bitsets.andNot(remaining, coverages.get(chosen));
+            used[chosen] = true;
+            companyOrder[steps] = chosen;
+            groupSizes[steps] = bestSize;
+            steps++;
+        }
+        return new Plan(Arrays.copyOf(companyOrder, steps), Arrays.copyOf(groupSizes, steps));
+    }
+    /**
+     * Checks whether every two tied companies cover either the same remaining items or none in common.
+     * Taking one of them then leaves the others the same items whichever it is, so their order does not change the sizes.
+     *
+     * @param coverages The bitsets of items each selected company can deliver.
+     * @param tied      The tied companies.
+     * @param remaining The bitset of items which are not assigned yet.
+     * @return          True if the tied companies are interchangeable, false otherwise.
+     */
+    private static boolean areInterchangeable(List<long[]> coverages, List<Integer> tied, long[] remaining) {
+        for (int i = 1; i < tied.size(); i++) {
+            long[] first = coverages.get(tied.get(i));
+            for (int j = 0; j < i; j++) {
+                long[] second = coverages.get(tied.get(j));
+                boolean identical = true;
+                boolean disjoint = true;
+                for (int word = 0; word < remaining.length; word++) {
+                    long firstWord = first[word] & remaining[word];
+                    long secondWord = second[word] & remaining[word];
+                    identical &= firstWord == secondWord;
+                    disjoint &= (firstWord & secondWord) == 0;
+                }
+                if (!identical && !disjoint) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,234 @@
+import java.util.*;
+
+public class LocalSearchState {
+    private final BasketMatrix basket;
+    // Number of groups whose company can deliver the item at each basket position
+    private final int[] coverageCounts;
+    private int[] companyIds;
+    private long[][] coverages;
+    // Items of every group in basket order, null once the group has been removed
+    private int[][] groupItems;
+    private int groupCount;
+    // Groups not tried yet, in a min-heap by group size and company ID
+    private int[] heap;
+    private int[] heapPositions;
+    private int heapSize;
+
+    /**
+     * Builds the search state from an assignment of basket items to companies.
+     *
+     * @param basket The compiled basket.
+     * @param owners The company ID assigned to every basket position, or -1 for items which are not delivered.
+     */
+    public LocalSearchState(BasketMatrix basket, int[] owners) {
+        this.basket = basket;
+        this.coverageCounts = new int[basket.getItemCount()];
+        reset(owners);
+        for (long[] coverage : coverages) {
+            addCoverage(coverage, 1);
+        }
+    }
+    /**
+     * Builds groups and the heap from the initial assignment. Every group starts untried.
+     *
+     * @param owners The company ID assigned to every basket position, or -1 for items which are not delivered.
+     */
+    private void reset(int[] owners) {
+        TreeMap<Integer, List<Integer>> itemsOfCompany = new TreeMap<>();
+        for (int itemIndex = 0; itemIndex < owners.length; itemIndex++) {
+            if (owners[itemIndex] >= 0) {
+                itemsOfCompany.computeIfAbsent(owners[itemIndex], k -> new ArrayList<>()).add(itemIndex);
+            }
+        }
+        groupCount = itemsOfCompany.size();
+        companyIds = new int[groupCount];
+        coverages = new long[groupCount][];
+        groupItems = new int[groupCount][];
+        int group = 0;
+        for (Map.Entry<Integer, List<Integer>> entry : itemsOfCompany.entrySet()) {
+            companyIds[group] = entry.getKey();
+            coverages[group] = basket.getCoverage(entry.getKey());
+            groupItems[group] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+            group++;
+        }
+
+        heap = new int[groupCount];
+        heapPositions = new int[groupCount];
+        heapSize = groupCount;
+        for (group = 0; group < groupCount; group++) {
+            heap[group] = group;
+            heapPositions[group] = group;
+        }
+        for (int position = heapSize / 2 - 1; position >= 0; position--) {
+            siftDown(position);
+        }
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+    /**
+     * Returns the number of remaining groups which have been tried.
+     *
+     * @return The number of tried groups.
+     */
+    public int getTriedGroupCount() {
+        return groupCount - heapSize;
+    }
+    /**
+     * Takes the smallest group not tried yet and marks it as tried.
+     * Ties are broken by company ID.
+     *
+     * @return The group, or -1 if every group has been tried.
+     */
+    public int pollSmallestUntriedGroup() {
+        if (heapSize == 0) {
+            return -1;
+        }
+        int group = heap[0];
+        remove(0);
+        return group;
+    }
+    /**
+     * Checks whether the group can be dropped, i.e. whether another group can deliver each of its items.
+     * Takes time proportional to the size of the group.
+     *
+     * @param group The group.
+     * @return      True if every item of the group is covered by at least one other group, false otherwise.
+     */
+    public boolean isRemovable(int group) {
+        for (int itemIndex : groupItems[group]) {
+            if (coverageCounts[itemIndex] < 2) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Drops the group and moves each of its items to the largest remaining group whose company can deliver it,
+     * ties broken by company ID. Only the coverage counts of the dropped company and the heap keys
+     * of the receiving groups change. Groups tried before stay tried: removing a group only lowers coverage counts
+     * and only adds items to the others, so a group which was not removable never becomes removable.
+     *
+     * @param group The removable group.
+     */
+    public void removeGroup(int group) {
+        int[] movedItems = groupItems[group];
+        if (heapPositions[group] >= 0) {
+            remove(heapPositions[group]);
+        }
+        groupItems[group] = null;
+        groupCount--;
+        addCoverage(coverages[group], -1);
+        for (int itemIndex : movedItems) {
+            int receiver = largestCoveringGroup(itemIndex);
+            groupItems[receiver] = insertItem(groupItems[receiver], itemIndex);
+            if (heapPositions[receiver] >= 0) {
+                siftDown(heapPositions[receiver]);
+            }
+        }
+    }
+
+    private int largestCoveringGroup(int itemIndex) {
+        int largest = -1;
+        for (int group = 0; group < companyIds.length; group++) {
+            if (groupItems[group] != null && Bitsets.get(coverages[group], itemIndex)
+                    && (largest < 0 || groupItems[group].length > groupItems[largest].length
+                    || groupItems[group].length == groupItems[largest].length && companyIds[group] < companyIds[largest])) {
+                largest = group;
+            }
+        }
+        return largest;
+    }
+
+    private static int[] insertItem(int[] items, int itemIndex) {
+        int position = Arrays.binarySearch(items, itemIndex);
+        int[] grown = new int[items.length + 1];
+        System.arraycopy(items, 0, grown, 0, -position - 1);
+        grown[-position - 1] = itemIndex;
+        System.arraycopy(items, -position - 1, grown, -position, items.length + position + 1);
+        return grown;
+    }
+
+    private void addCoverage(long[] coverage, int delta) {
+        for (int itemIndex = Bitsets.nextSetBit(coverage, 0); itemIndex >= 0; itemIndex = Bitsets.nextSetBit(coverage, itemIndex + 1)) {
+            coverageCounts[itemIndex] += delta;
+        }
+    }
+    /**
+     * Returns the current pool as delivery groups of item names.
+     *
+     * @return A map representing the delivery pools, each list keeps the basket order.
+     */
+    public Map<String, List<String>> toDeliveryPool() {
+        Map<String, List<String>> deliveryPool = new HashMap<>();
+        for (int group = 0; group < companyIds.length; group++) {
+            if (groupItems[group] == null) {
+                continue;
+            }
+            List<String> items = new ArrayList<>(groupItems[group].length);
+            for (int itemIndex : groupItems[group]) {
+                items.add(basket.getItems().get(itemIndex));
+            }
+            deliveryPool.put(basket.getCatalog().getCompanyName(companyIds[group]), items);
+        }
+        return deliveryPool;
+    }
+
+    private boolean less(int group, int other) {
+        int sizeOrder = Integer.compare(groupItems[group].length, groupItems[other].length);
+        return sizeOrder != 0 ? sizeOrder < 0 : companyIds[group] < companyIds[other];
+    }
+
+    private void remove(int position) {
+        int removed = heap[position];
+        heapPositions[removed] = -1;
+        heapSize--;
+        if (position == heapSize) {
+            return;
+        }
+        int moved = heap[heapSize];
+        heap[position] = moved;
+        heapPositions[moved] = position;
+        siftDown(position);
+        siftUp(heapPositions[moved]);
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < heapSize && less(heap[left], heap[smallest])) {
+                smallest = left;
+            }
+            if (right < heapSize && less(heap[right], heap[smallest])) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!less(heap[position], heap[parent])) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void swap(int first, int second) {
+        int group = heap[first];
+        heap[first] = heap[second];
+        heap[second] = group;
+        heapPositions[heap[first]] = first;
+        heapPositions[heap[second]] = second;
+    }
+}
@@ -0,0 +1,233 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class OffHeapCatalog implements DeliveryCatalog {
+    private final String[] companyNames;
+    private final Map<String, Integer> companyIds = new HashMap<>();
+    private final byte[][] companyNamesJson;
+    private final int productCount;
+    private final int companyWordCount;
+    // UTF-8 bytes of all product names, one after another
+    private final ByteBuffer keyBytes;
+    // Start of every product name in keyBytes, one more entry than there are products
+    private final IntBuffer keyOffsets;
+    // Product names as quoted JSON strings in UTF-8, one after another, and the start of every one of them
+    private final ByteBuffer keyJsonBytes;
+    private final IntBuffer keyJsonOffsets;
+    // Company bitsets of all products, companyWordCount words per product
+    private final LongBuffer companyMasks;
+    // Open addressing table of product ID + 1, 0 marks an empty slot
+    private final IntBuffer indexSlots;
+    // Hash of the product stored in the slot, checked before the name is compared
+    private final IntBuffer indexHashes;
+    private final int indexMask;
+
+    /**
+     * Builds a catalog keeping product names, company bitsets and the product lookup index in direct buffers
+     * outside of the Java heap, together with the JSON form of product names. Only the company dictionary stays on the heap.
+     * Lookups decode product names on demand, so they are slower than with {@link CompiledCatalog}.
+     *
+     * @param deliveryConfigMap The structure which stores parsed JSON dictionary representing delivery configurations.
+     */
+    public OffHeapCatalog(Map<String, List<String>> deliveryConfigMap) {
+        List<String> companies = new ArrayList<>();
+        for (List<String> deliveryMethods : deliveryConfigMap.values()) {
+            for (String company : deliveryMethods) {
+                if (!companyIds.containsKey(company)) {
+                    companyIds.put(company, companies.size());
+                    companies.add(company);
+                }
+            }
+        }
+        companyNames = companies.toArray(new String[0]);
+        companyNamesJson = new byte[companyNames.length][];
+        for (int companyId = 0; companyId < companyNames.length; companyId++) {
+            companyNamesJson[companyId] = SplitResultJsonWriter.encodeJsonString(companyNames[companyId]);
+        }
+
+        productCount = deliveryConfigMap.size();
+        companyWordCount = Bitsets.wordCount(companyNames.length);
+        long keyLength = 0;
+        long keyJsonLength = 0;
+        for (String productName : deliveryConfigMap.keySet()) {
+            keyLength += productName.getBytes(StandardCharsets.UTF_8).length;
+            keyJsonLength += SplitResultJsonWriter.encodeJsonString(productName).length;
+        }
+        keyBytes = ByteBuffer.allocateDirect(checkBufferBytes("Product names", keyLength));
+        keyOffsets = ByteBuffer.allocateDirect(checkBufferBytes("Product name offsets", 4L * (productCount + 1))).asIntBuffer();
+        keyJsonBytes = ByteBuffer.allocateDirect(checkBufferBytes("Encoded product names", keyJsonLength));
+        keyJsonOffsets = ByteBuffer.allocateDirect(checkBufferBytes("Encoded product name offsets", 4L * (productCount + 1))).asIntBuffer();
+        companyMasks = ByteBuffer.allocateDirect(checkBufferBytes("Company bitsets", 8L * productCount * companyWordCount)).asLongBuffer();
+        long indexCapacity = Long.highestOneBit(Math.max(2, productCount * 2L - 1)) << 1;
+        indexSlots = ByteBuffer.allocateDirect(checkBufferBytes("Product index", 4 * indexCapacity)).asIntBuffer();
+        indexHashes = ByteBuffer.allocateDirect(checkBufferBytes("Product index hashes", 4 * indexCapacity)).asIntBuffer();
+        indexMask = (int) indexCapacity - 1;
+
+        int productId = 0;
+        for (Map.Entry<String, List<String>> entry : deliveryConfigMap.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            keyOffsets.put(productId, keyBytes.position());
+            keyBytes.put(key);
+            keyJsonOffsets.put(productId, keyJsonBytes.position());
+            keyJsonBytes.put(SplitResultJsonWriter.encodeJsonString(entry.getKey()));
+            for (String company : entry.getValue()) {
+                int companyId = companyIds.get(company);
+                int word = productId * companyWordCount + (companyId >>> 6);
+                companyMasks.put(word, companyMasks.get(word) | 1L << companyId);
+            }
+            int hash = hash(key);
+            int slot = hash & indexMask;
+            while (indexSlots.get(slot) != 0) {
+                slot = (slot + 1) & indexMask;
+            }
+            indexSlots.put(slot, productId + 1);
+            indexHashes.put(slot, hash);
+            productId++;
+        }
+        keyOffsets.put(productCount, keyBytes.position());
+        keyJsonOffsets.put(productCount, keyJsonBytes.position());
+    }
+
+    /**
+     * Checks that a buffer fits a single direct buffer, whose capacity is an int.
+     *
+     * @param content The content of the buffer, for the error message.
+     * @param bytes   The size of the buffer in bytes.
+     * @return        The size of the buffer in bytes.
+     * @throws IllegalArgumentException if the buffer would take more than 2 GB.
+     */
+    private static int checkBufferBytes(String content, long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(content + " take more than 2 GB: " + bytes + " bytes");
+        }
+        return (int) bytes;
+    }
+
+    @Override
+    public int getProductId(String productName) {
+        byte[] key = productName.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        for (int slot = hash & indexMask; ; slot = (slot + 1) & indexMask) {
+            int storedProduct = indexSlots.get(slot);
+            if (storedProduct == 0) {
+                return -1;
+            }
+            if (indexHashes.get(slot) == hash && keyEquals(storedProduct - 1, key)) {
+                return storedProduct - 1;
+            }
+        }
+    }
+
+    @Override
+    public int getCompanyId(String companyName) {
+        Integer companyId = companyIds.get(companyName);
+        return companyId == null ? -1 : companyId;
+    }
+
+    @Override
+    public String getProductName(int productId) {
+        return new String(productKey(productId), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getCompanyName(int companyId) {
+        return companyNames[companyId];
+    }
+
+    @Override
+    public int getProductCount() {
+        return productCount;
+    }
+
+    @Override
+    public int getCompanyCount() {
+        return companyNames.length;
+    }
+
+    @Override
+    public long getCompanyMaskWord(int productId, int wordIndex) {
+        return companyMasks.get(productId * companyWordCount + wordIndex);
+    }
+    /**
+     * Returns the product name as a quoted JSON string encoded in UTF-8.
+     * Encoded names are kept off the heap, so every call copies one into a new array;
+     * {@link #getProductNameJsonLength(int)} and {@link #putProductNameJson(int, ByteBuffer)} do not.
+     *
+     * @param productId The ID of the product.
+     * @return          The encoded product name.
+     */
+    @Override
+    public byte[] getProductNameJson(int productId) {
+        int start = keyJsonOffsets.get(productId);
+        byte[] name = new byte[keyJsonOffsets.get(productId + 1) - start];
+        keyJsonBytes.get(start, name);
+        return name;
+    }
+
+    @Override
+    public int getProductNameJsonLength(int productId) {
+        return keyJsonOffsets.get(productId + 1) - keyJsonOffsets.get(productId);
+    }
+
+    @Override
+    public void putProductNameJson(int productId, ByteBuffer buffer) {
+        int start = keyJsonOffsets.get(productId);
+        int length = keyJsonOffsets.get(productId + 1) - start;
+        if (buffer.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(buffer.position(), keyJsonBytes, start, length);
+        buffer.position(buffer.position() + length);
+    }
+
+    @Override
+    public byte[] getCompanyNameJson(int companyId) {
+        return companyNamesJson[companyId];
+    }
+    /**
+     * Returns the number of bytes held in direct buffers.
+     *
+     * @return The off-heap size of the catalog in bytes.
+     */
+    public long getOffHeapBytes() {
+        return keyBytes.capacity() + 4L * keyOffsets.capacity() + keyJsonBytes.capacity() + 4L * keyJsonOffsets.capacity()
+                + 8L * companyMasks.capacity()
+                + 4L * indexSlots.capacity() + 4L * indexHashes.capacity();
+    }
+
+    private byte[] productKey(int productId) {
+        int start = keyOffsets.get(productId);
+        byte[] key = new byte[keyOffsets.get(productId + 1) - start];
+        keyBytes.get(start, key);
+        return key;
+    }
+
+    private boolean keyEquals(int productId, byte[] key) {
+        int start = keyOffsets.get(productId);
+        if (keyOffsets.get(productId + 1) - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (keyBytes.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Hashes a product name with FNV-1a followed by a final mix, so that consecutive slots are evenly used.
+     */
+    private static int hash(byte[] key) {
+        int hash = 0x811C9DC5;
+        for (byte keyByte : key) {
+            hash = (hash ^ keyByte) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 13);
+    }
+}
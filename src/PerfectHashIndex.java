@@ -0,0 +1,249 @@
+import java.util.*;
+
+public class PerfectHashIndex {
+    // Hashes below the limit, 60% of keys, go to the dense buckets, 30% of all buckets,
+    // so that large buckets are placed while the table is still mostly empty
+    private static final long DENSE_HASH_LIMIT = (long) (0.6 * (1L << 32));
+    private static final double DENSE_BUCKET_SHARE = 0.3;
+    // Keys per bucket are about log2(keys) / BUCKET_DENSITY
+    private static final double BUCKET_DENSITY = 5.0;
+    // Keys per slot of the table, the free slots below the key count take the keys placed above it
+    private static final double LOAD_FACTOR = 0.99;
+
+    private final long seed;
+    private final int tableSize;
+    private final int denseBucketCount;
+    private final int[] displacements;
+    private final int[] remappedSlots;
+    private final int[] fingerprints;
+    private final long buildTimeNanos;
+
+    private PerfectHashIndex(long seed, int tableSize, int denseBucketCount, int[] displacements, int[] remappedSlots,
+                             int[] fingerprints, long buildTimeNanos) {
+        this.seed = seed;
+        this.tableSize = tableSize;
+        this.denseBucketCount = denseBucketCount;
+        this.displacements = displacements;
+        this.remappedSlots = remappedSlots;
+        this.fingerprints = fingerprints;
+        this.buildTimeNanos = buildTimeNanos;
+    }
+    /**
+     * Builds a minimal perfect hash over the given distinct keys with the hash and displace method of PTHash:
+     * keys are grouped into small buckets, 60% of them into the first 30% of buckets, and buckets, from the largest
+     * one, look for a displacement which moves all their keys to free slots of a table slightly larger than the key
+     * count. Since the table always has free slots left, every bucket finds a displacement after a few tries.
+     * Keys placed at or above the key count are then moved to the slots left free below it,
+     * so every key gets its own slot in {@code [0, keys.size())}.
+     *
+     * @param keys The distinct keys.
+     * @return     The index.
+     * @throws IllegalArgumentException If the keys are not distinct.
+     */
+    public static PerfectHashIndex build(List<String> keys) {
+        long start = System.nanoTime();
+        int keyCount = keys.size();
+        int tableSize = (int) Math.min(Integer.MAX_VALUE, Math.max(keyCount, (long) Math.ceil(keyCount / LOAD_FACTOR)));
+        int bucketCount = (int) Math.max(1, Math.ceil(keyCount * BUCKET_DENSITY / Math.max(1, log2(keyCount))));
+        int denseBucketCount = Math.max(1, (int) (bucketCount * DENSE_BUCKET_SHARE));
+        long[] hashes = new long[keyCount];
+        boolean distinct = false;
+        // Distinct keys only fail when two of them share a 64-bit hash, which another seed separates
+        for (long seed = 0; ; seed++) {
+            for (int key = 0; key < keyCount; key++) {
+                hashes[key] = hash(keys.get(key), seed);
+            }
+            long[] occupied = new long[Bitsets.wordCount(tableSize)];
+            int[] displacements = place(hashes, tableSize, bucketCount, denseBucketCount, occupied);
+            if (displacements == null) {
+                if (!distinct && new HashSet<>(keys).size() != keyCount) {
+                    throw new IllegalArgumentException("Keys of a perfect hash must be distinct");
+                }
+                distinct = true;
+                continue;
+            }
+            int[] remappedSlots = remap(occupied, keyCount, tableSize);
+            int[] fingerprints = new int[keyCount];
+            for (int key = 0; key < keyCount; key++) {
+                fingerprints[slot(hashes[key], tableSize, denseBucketCount, displacements, remappedSlots, keyCount)] = fingerprint(hashes[key]);
+            }
+            return new PerfectHashIndex(seed, tableSize, denseBucketCount, displacements, remappedSlots, fingerprints,
+                    System.nanoTime() - start);
+        }
+    }
+    /**
+     * Looks the key up with a single probe. Keys which were not part of the build are rejected by a 32-bit fingerprint,
+     * callers needing a certain answer compare the key stored under the returned slot.
+     *
+     * @param key The key to look up.
+     * @return    The slot of the key, or -1 if the key is not present.
+     */
+    public int lookup(String key) {
+        if (fingerprints.length == 0) {
+            return -1;
+        }
+        long hash = hash(key, seed);
+        int slot = slot(hash, tableSize, denseBucketCount, displacements, remappedSlots, fingerprints.length);
+        return fingerprints[slot] == fingerprint(hash) ? slot : -1;
+    }
+
+    public int size() {
+        return fingerprints.length;
+    }
+
+    public long getBuildTimeNanos() {
+        return buildTimeNanos;
+    }
+
+    private static int slot(long hash, int tableSize, int denseBucketCount, int[] displacements, int[] remappedSlots, int keyCount) {
+        int slot = displacedSlot(hash, displacements[bucket(hash, displacements.length, denseBucketCount)], tableSize);
+        return slot < keyCount ? slot : remappedSlots[slot - keyCount];
+    }
+    /**
+     * Finds a displacement for every bucket, largest buckets first.
+     *
+     * @param hashes           The hashes of keys.
+     * @param tableSize        The number of slots.
+     * @param bucketCount      The number of buckets.
+     * @param denseBucketCount The number of buckets taking the dense share of keys.
+     * @param occupied         The bitset of occupied slots, filled by the call.
+     * @return                 The displacement of every bucket, or null if two keys of a bucket share their hash.
+     */
+    private static int[] place(long[] hashes, int tableSize, int bucketCount, int denseBucketCount, long[] occupied) {
+        int[] bucketStarts = new int[bucketCount + 1];
+        for (long hash : hashes) {
+            bucketStarts[bucket(hash, bucketCount, denseBucketCount) + 1]++;
+        }
+        int maxBucketSize = 0;
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            maxBucketSize = Math.max(maxBucketSize, bucketStarts[bucket + 1]);
+            bucketStarts[bucket + 1] += bucketStarts[bucket];
+        }
+        // Keys sorted by bucket, bucketStarts[b] is the first key of bucket b
+        long[] bucketHashes = new long[hashes.length];
+        int[] positions = Arrays.copyOf(bucketStarts, bucketCount);
+        for (long hash : hashes) {
+            bucketHashes[positions[bucket(hash, bucketCount, denseBucketCount)]++] = hash;
+        }
+
+        // Buckets sorted by decreasing size with a counting sort, sizes are small
+        int[] sizeStarts = new int[maxBucketSize + 2];
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            sizeStarts[maxBucketSize - (bucketStarts[bucket + 1] - bucketStarts[bucket]) + 1]++;
+        }
+        for (int size = 0; size <= maxBucketSize; size++) {
+            sizeStarts[size + 1] += sizeStarts[size];
+        }
+        int[] order = new int[bucketCount];
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            order[sizeStarts[maxBucketSize - (bucketStarts[bucket + 1] - bucketStarts[bucket])]++] = bucket;
+        }
+
+        int[] displacements = new int[bucketCount];
+        int[] slots = new int[maxBucketSize];
+        for (int bucket : order) {
+            int from = bucketStarts[bucket];
+            int size = bucketStarts[bucket + 1] - from;
+            if (size == 0) {
+                break;
+            }
+            // Keys with equal hashes never get distinct slots, another seed has to separate them
+            for (int i = from + 1; i < from + size; i++) {
+                for (int j = from; j < i; j++) {
+                    if (bucketHashes[i] == bucketHashes[j]) {
+                        return null;
+                    }
+                }
+            }
+            int displacement = 0;
+            while (!fits(bucketHashes, from, size, displacement, tableSize, occupied, slots)) {
+                if (++displacement < 0) {
+                    return null;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                Bitsets.set(occupied, slots[i]);
+            }
+            displacements[bucket] = displacement;
+        }
+        return displacements;
+    }
+    /**
+     * Checks whether the keys of a bucket land in distinct free slots with the given displacement.
+     */
+    private static boolean fits(long[] bucketHashes, int from, int size, int displacement, int tableSize, long[] occupied, int[] slots) {
+        for (int i = 0; i < size; i++) {
+            int slot = displacedSlot(bucketHashes[from + i], displacement, tableSize);
+            if (Bitsets.get(occupied, slot)) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (slots[j] == slot) {
+                    return false;
+                }
+            }
+            slots[i] = slot;
+        }
+        return true;
+    }
+    /**
+     * Pairs every occupied slot at or above the key count with a free slot below it. There are as many of both.
+     *
+     * @param occupied  The bitset of occupied slots.
+     * @param keyCount  The number of keys.
+     * @param tableSize The number of slots.
+     * @return          The slot below the key count taking the key of every slot from the key count up.
+     */
+    private static int[] remap(long[] occupied, int keyCount, int tableSize) {
+        int[] remappedSlots = new int[tableSize - keyCount];
+        int freeSlot = 0;
+        for (int slot = Bitsets.nextSetBit(occupied, keyCount); slot >= 0; slot = Bitsets.nextSetBit(occupied, slot + 1)) {
+            while (Bitsets.get(occupied, freeSlot)) {
+                freeSlot++;
+            }
+            remappedSlots[slot - keyCount] = freeSlot++;
+        }
+        return remappedSlots;
+    }
+
+    private static int bucket(long hash, int bucketCount, int denseBucketCount) {
+        long high = hash >>> 32;
+        if (denseBucketCount == bucketCount) {
+            return (int) ((high * bucketCount) >>> 32);
+        }
+        // The dense share of hashes goes to the first buckets, the rest to the others
+        if (high < DENSE_HASH_LIMIT) {
+            return (int) (high * denseBucketCount / DENSE_HASH_LIMIT);
+        }
+        return denseBucketCount + (int) (((hash & 0xFFFFFFFFL) * (bucketCount - denseBucketCount)) >>> 32);
+    }
+
+    private static int displacedSlot(long hash, int displacement, int tableSize) {
+        long mixed = mix(hash + displacement * 0x9E3779B97F4A7C15L);
+        return (int) (((mixed >>> 32) * tableSize) >>> 32);
+    }
+
+    private static int fingerprint(long hash) {
+        return (int) mix(hash ^ 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private static double log2(int value) {
+        return Math.log(value) / Math.log(2);
+    }
+    /**
+     * Hashes the characters of a key, the seed changes the whole family of hash functions.
+     */
+    private static long hash(String key, long seed) {
+        long hash = mix(seed * 0xD6E8FEB86659FD93L + key.length());
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+}
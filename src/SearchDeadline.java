@@ -0,0 +1,72 @@
+import java.time.Duration;
+
+public class SearchDeadline {
+    private final long deadlineNanos;
+    private final boolean bounded;
+    private final SearchDeadline parent;
+    private volatile boolean cancelled;
+
+    private SearchDeadline(long deadlineNanos, boolean bounded, SearchDeadline parent) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+        this.parent = parent;
+    }
+    /**
+     * Creates a deadline which expires only when it is cancelled.
+     *
+     * @return The unbounded deadline.
+     */
+    public static SearchDeadline none() {
+        return new SearchDeadline(Long.MAX_VALUE, false, null);
+    }
+    /**
+     * Creates a deadline expiring after the given time from now.
+     *
+     * @param timeout The time available for the search.
+     * @return        The deadline.
+     */
+    public static SearchDeadline after(Duration timeout) {
+        return new SearchDeadline(System.nanoTime() + timeout.toNanos(), true, null);
+    }
+    /**
+     * Creates a deadline expiring after the given time from now, or earlier when this deadline expires
+     * or is cancelled.
+     *
+     * @param timeout The time available for the search.
+     * @return        The deadline.
+     */
+    public SearchDeadline limitTo(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        if (bounded && deadlineNanos - deadline < 0) {
+            deadline = deadlineNanos;
+        }
+        return new SearchDeadline(deadline, true, this);
+    }
+    /**
+     * Checks whether the search is allowed to continue. The check costs a single System.nanoTime call,
+     * callers running tight loops should check it once per batch of iterations.
+     *
+     * @return True if the deadline has passed or the search was cancelled, false otherwise.
+     */
+    public boolean isExpired() {
+        return isCancelled() || bounded && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    private boolean isCancelled() {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+    /**
+     * Cancels the search, it stops at the next deadline check as if the deadline had passed.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    /**
+     * Checks whether the deadline limits the search at all.
+     *
+     * @return True for a deadline created with a timeout, false for the unbounded one.
+     */
+    public boolean isBounded() {
+        return bounded;
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+public class ShadowVerifier implements AutoCloseable {
+    // Gaps of that many deliveries and more share the last histogram bucket
+    public static final int MAX_TRACKED_GAP = 3;
+    private static final long DEFAULT_NODE_BUDGET = 1_000_000;
+
+    /**
+     * Outcome of verifying a single sampled split.
+     */
+    public static class Sample {
+        private final int basketSize;
+        private final int heuristicGroups;
+        private final int referenceGroups;
+        private final boolean exact;
+        private final long shadowNanos;
+
+        private Sample(int basketSize, int heuristicGroups, int referenceGroups, boolean exact, long shadowNanos) {
+            this.basketSize = basketSize;
+            this.heuristicGroups = heuristicGroups;
+            this.referenceGroups = referenceGroups;
+            this.exact = exact;
+            this.shadowNanos = shadowNanos;
+        }
+
+        public int getBasketSize() {
+            return basketSize;
+        }
+
+        public int getHeuristicGroups() {
+            return heuristicGroups;
+        }
+        /**
+         * Returns the number of groups the split is compared to: the minimum if the exact search completed,
+         * the lower bound otherwise.
+         *
+         * @return The reference number of delivery groups.
+         */
+        public int getReferenceGroups() {
+            return referenceGroups;
+        }
+
+        public boolean isExact() {
+            return exact;
+        }
+
+        public int getGap() {
+            return heuristicGroups - referenceGroups;
+        }
+
+        public long getShadowNanos() {
+            return shadowNanos;
+        }
+    }
+
+    private final DeliveryCatalog catalog;
+    private final double sampleRate;
+    private final long nodeBudget;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder exactVerified = new LongAdder();
+    private final LongAdder totalGap = new LongAdder();
+    private final LongAdder totalShadowNanos = new LongAdder();
+    private final AtomicLong maxShadowNanos = new AtomicLong();
+    private final AtomicLongArray gapHistogram = new AtomicLongArray(MAX_TRACKED_GAP + 1);
+    private volatile Consumer<Sample> sampleListener;
+
+    /**
+     * Creates a verifier which checks a fraction of splits against an exact answer on a single background thread.
+     *
+     * @param catalog       The compiled delivery configuration.
+     * @param sampleRate    The fraction of splits to verify, between 0 and 1.
+     * @param queueCapacity The number of sampled splits which can wait for verification, further samples are dropped.
+     */
+    public ShadowVerifier(DeliveryCatalog catalog, double sampleRate, int queueCapacity) {
+        this(catalog, sampleRate, queueCapacity, DEFAULT_NODE_BUDGET);
+    }
+    /**
+     * Creates a verifier which checks a fraction of splits against an exact answer on a single background thread.
+     *
+     * @param catalog       The compiled delivery configuration.
+     * @param sampleRate    The fraction of splits to verify, between 0 and 1.
+     * @param queueCapacity The number of sampled splits which can wait for verification, further samples are dropped.
+     * @param nodeBudget    The maximum number of exact search nodes per sample, the lower bound is used once it runs out.
+     */
+    public ShadowVerifier(DeliveryCatalog catalog, double sampleRate, int queueCapacity, long nodeBudget) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.catalog = catalog;
+        this.sampleRate = sampleRate;
+        this.nodeBudget = nodeBudget;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "basket-splitter-shadow");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, (runnable, pool) -> dropped.increment());
+    }
+    /**
+     * Samples the split and, if it is selected, schedules its verification on the background thread.
+     * The calling thread only copies the basket of a selected split, it never waits for the verification.
+     *
+     * @param items  The list of items which were split.
+     * @param result The result of the split.
+     */
+    public void offer(List<String> items, SplitResult result) {
+        if (sampleRate == 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        sampled.increment();
+        List<String> basket = new ArrayList<>(items);
+        int heuristicGroups = result.getGroupCount();
+        int lowerBound = result.getLowerBound();
+        executor.execute(() -> verify(basket, heuristicGroups, lowerBound));
+    }
+    /**
+     * Computes the reference answer for a sampled split and records the gap.
+     *
+     * @param items           The list of items which were split.
+     * @param heuristicGroups The number of delivery groups returned by the split.
+     * @param lowerBound      The lower bound reported by the split.
+     */
+    private void verify(List<String> items, int heuristicGroups, int lowerBound) {
+        long start = System.nanoTime();
+        int referenceGroups = lowerBound;
+        boolean exact = heuristicGroups == lowerBound;
+        if (!exact) {
+            BasketMatrix basket = BasketMatrix.compile(catalog, items);
+            List<Integer> candidates = new ArrayList<>();
+            for (String company : DominancePruner.findNonDominatedCompanies(basket)) {
+                candidates.add(catalog.getCompanyId(company));
+            }
+            ExactSplitSolver.Solution solution = ExactSplitSolver.solve(basket, candidates, nodeBudget);
+            if (solution.isOptimal()) {
+                referenceGroups = solution.getCompanyIds().size();
+                exact = true;
+            }
+        }
+        long shadowNanos = System.nanoTime() - start;
+
+        Sample sample = new Sample(items.size(), heuristicGroups, referenceGroups, exact, shadowNanos);
+        verified.increment();
+        if (exact) {
+            exactVerified.increment();
+        }
+        totalGap.add(sample.getGap());
+        gapHistogram.incrementAndGet(Math.min(sample.getGap(), MAX_TRACKED_GAP));
+        totalShadowNanos.add(shadowNanos);
+        maxShadowNanos.accumulateAndGet(shadowNanos, Math::max);
+
+        Consumer<Sample> listener = sampleListener;
+        if (listener != null) {
+            listener.accept(sample);
+        }
+    }
+    /**
+     * Registers a listener called on the background thread for every verified sample, e.g. to record basket shapes.
+     *
+     * @param sampleListener The listener, or null to remove it.
+     */
+    public void setSampleListener(Consumer<Sample> sampleListener) {
+        this.sampleListener = sampleListener;
+    }
+
+    public long getSampledCount() {
+        return sampled.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getVerifiedCount() {
+        return verified.sum();
+    }
+
+    public long getExactVerifiedCount() {
+        return exactVerified.sum();
+    }
+
+    public long getTotalGap() {
+        return totalGap.sum();
+    }
+    /**
+     * Returns the number of verified splits with the given gap to the reference answer.
+     *
+     * @param gap The number of extra deliveries, the last bucket also counts larger gaps.
+     * @return    The number of verified splits.
+     */
+    public long getGapCount(int gap) {
+        return gapHistogram.get(Math.min(gap, MAX_TRACKED_GAP));
+    }
+
+    public long getTotalShadowNanos() {
+        return totalShadowNanos.sum();
+    }
+
+    public long getMaxShadowNanos() {
+        return maxShadowNanos.get();
+    }
+    /**
+     * Stops the background thread, pending samples are discarded.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,183 @@
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONArray;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class SidecarBenchmark {
+    /**
+     * Latency of one transport, per basket.
+     */
+    public record Measurement(String transport, int requests, long p50Nanos, long p99Nanos, long meanNanos) {
+    }
+
+    /**
+     * A way of sending a basket to the splitter and reading its delivery pools back.
+     */
+    private interface Transport {
+        void split(int basket) throws IOException, InterruptedException;
+    }
+
+    private SidecarBenchmark() {
+    }
+    /**
+     * Serves the splitter both over JSON on loopback HTTP and over the sidecar socket, and compares the latency
+     * of sequential requests: JSON over HTTP, the sidecar with item names and the sidecar with catalog IDs.
+     * Pipelined sidecar requests are reported by their mean time per basket.
+     * Every transport reads the reply back into delivery pools, so decoding is part of the latency.
+     *
+     * @param basketSplitter The splitter.
+     * @param baskets        The baskets sent in turn.
+     * @param warmup         The number of rounds over all baskets before measuring.
+     * @param rounds         The number of measured rounds over all baskets.
+     * @return               The measurement of every transport.
+     * @throws IOException if a server cannot be started or a request fails.
+     */
+    public static List<Measurement> run(BasketSplitter basketSplitter, List<List<String>> baskets, int warmup, int rounds)
+            throws IOException, InterruptedException {
+        DeliveryCatalog catalog = basketSplitter.getCatalog();
+        List<int[]> idBaskets = new ArrayList<>();
+        for (List<String> items : baskets) {
+            idBaskets.add(items.stream().mapToInt(catalog::getProductId).filter(productId -> productId >= 0).toArray());
+        }
+        Path socketDirectory = Files.createTempDirectory("split-sidecar");
+        HttpServer httpServer = startHttpServer(basketSplitter);
+        List<Measurement> measurements = new ArrayList<>();
+        try (SplitSidecarServer sidecar = new SplitSidecarServer(basketSplitter, socketDirectory.resolve("split.sock"));
+             SplitSidecarClient client = SplitSidecarClient.connect(sidecar.getSocketPath())) {
+            HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            URI uri = URI.create("http://127.0.0.1:" + httpServer.getAddress().getPort() + "/split");
+            JSONParser parser = new JSONParser();
+            measurements.add(measure("http-json", baskets.size(), warmup, rounds, basket -> {
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .POST(HttpRequest.BodyPublishers.ofString(JSONArray.toJSONString(baskets.get(basket)), StandardCharsets.UTF_8)).build();
+                String body = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).body();
+                try {
+                    parser.parse(body);
+                } catch (ParseException e) {
+                    throw new IOException("Invalid reply: " + body, e);
+                }
+            }));
+            measurements.add(measure("sidecar-names", baskets.size(), warmup, rounds, basket -> client.split(baskets.get(basket))));
+            measurements.add(measure("sidecar-ids", baskets.size(), warmup, rounds, basket -> client.splitIds(idBaskets.get(basket))));
+
+            for (int round = 0; round < warmup; round++) {
+                client.splitAll(baskets);
+            }
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                client.splitAll(baskets);
+            }
+            long mean = (System.nanoTime() - start) / ((long) rounds * baskets.size());
+            measurements.add(new Measurement("sidecar-pipelined", rounds * baskets.size(), -1, -1, mean));
+        } finally {
+            httpServer.stop(0);
+            Files.deleteIfExists(socketDirectory);
+        }
+        return measurements;
+    }
+
+    private static Measurement measure(String name, int basketCount, int warmup, int rounds, Transport transport)
+            throws IOException, InterruptedException {
+        for (int round = 0; round < warmup; round++) {
+            for (int basket = 0; basket < basketCount; basket++) {
+                transport.split(basket);
+            }
+        }
+        long[] latencies = new long[rounds * basketCount];
+        int request = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int basket = 0; basket < basketCount; basket++) {
+                long start = System.nanoTime();
+                transport.split(basket);
+                latencies[request++] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(latencies);
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        return new Measurement(name, latencies.length, latencies[latencies.length / 2],
+                latencies[Math.min(latencies.length - 1, latencies.length * 99 / 100)], total / latencies.length);
+    }
+    /**
+     * Starts the reference JSON endpoint: a POST to {@code /split} with a JSON array of items
+     * is answered by the JSON object of delivery pools.
+     *
+     * @param basketSplitter The splitter.
+     * @return               The started server on an ephemeral loopback port.
+     * @throws IOException if the server cannot be started.
+     */
+    private static HttpServer startHttpServer(BasketSplitter basketSplitter) throws IOException {
+        // Without TCP_NODELAY small replies wait for delayed acknowledgements, which would dwarf the transport cost
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/split", exchange -> {
+            try (exchange) {
+                List<String> items = new ArrayList<>();
+                try {
+                    for (Object item : (JSONArray) new JSONParser().parse(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+                        items.add((String) item);
+                    }
+                } catch (ParseException | ClassCastException e) {
+                    exchange.sendResponseHeaders(400, -1);
+                    return;
+                }
+                SplitResult result = basketSplitter.splitDetailed(items);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, SplitResultJsonWriter.serializedSize(result));
+                try (OutputStream body = exchange.getResponseBody()) {
+                    SplitResultJsonWriter.writeTo(result, body);
+                }
+            }
+        });
+        server.start();
+        return server;
+    }
+    /**
+     * Runs the comparison from the command line:
+     * {@code SidecarBenchmark <config.json> <basket.json>... [--warmup N] [--rounds N]}.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<String> basketFiles = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i], args[++i]);
+            } else {
+                basketFiles.add(args[i]);
+            }
+        }
+        if (args.length < 1 || basketFiles.isEmpty()) {
+            System.err.println("Usage: SidecarBenchmark <config.json> <basket.json>... [--warmup N] [--rounds N]");
+            System.exit(2);
+        }
+        List<List<String>> baskets = new ArrayList<>();
+        for (String basketFile : basketFiles) {
+            baskets.add(Utils.readItemsFromJsonFile(new File(basketFile).getAbsolutePath()));
+        }
+        List<Measurement> measurements = run(new BasketSplitter(args[0]), baskets,
+                Integer.parseInt(options.getOrDefault("--warmup", "200")), Integer.parseInt(options.getOrDefault("--rounds", "1000")));
+        System.out.printf("%-18s %9s %12s %12s %12s%n", "transport", "requests", "p50 ns", "p99 ns", "mean ns");
+        for (Measurement measurement : measurements) {
+            System.out.printf("%-18s %9d %12s %12s %12d%n", measurement.transport(), measurement.requests(),
+                    measurement.p50Nanos() < 0 ? "-" : String.valueOf(measurement.p50Nanos()),
+                    measurement.p99Nanos() < 0 ? "-" : String.valueOf(measurement.p99Nanos()), measurement.meanNanos());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+import java.time.Duration;
+import java.util.List;
+
+public enum SolverMode {
+    /**
+     * The heuristic search, stopping at the lower bound or after the iteration limit.
+     */
+    HEURISTIC {
+        @Override
+        public SplitResult split(BasketSplitter splitter, List<String> items, Duration timeBudget) {
+            return splitter.splitDetailed(items);
+        }
+    },
+    /**
+     * The heuristic search followed by the exact solver, both bounded by the time budget.
+     */
+    EXACT {
+        @Override
+        public SplitResult split(BasketSplitter splitter, List<String> items, Duration timeBudget) {
+            return splitter.split(items, timeBudget);
+        }
+    };
+
+    /**
+     * Splits the basket with this solver.
+     *
+     * @param splitter   The splitter holding the delivery configuration.
+     * @param items      The list of items to be split.
+     * @param timeBudget The time available for solvers which can use it.
+     * @return           The delivery groups found.
+     */
+    public abstract SplitResult split(BasketSplitter splitter, List<String> items, Duration timeBudget);
+}
@@ -0,0 +1,370 @@
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class SplitBenchmark {
+    // Latency differences below this are measurement noise even when they exceed the tolerance
+    private static final long LATENCY_NOISE_FLOOR_NANOS = 50_000;
+
+    /**
+     * Quality and latency of a single basket of the corpus.
+     */
+    public record Measurement(String basket, int itemCount, int groupCount, int largestGroupSize, int lowerBound,
+                              boolean completed, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos,
+                              long allocatedBytes) {
+    }
+
+    /**
+     * Size of a configuration of the corpus and the time it took to build its product index.
+     */
+    public record CatalogMeasurement(String config, int productCount, int companyCount, long indexBuildNanos) {
+    }
+
+    /**
+     * A basket which got worse than in the baseline run.
+     */
+    public record Regression(String basket, Kind kind, String detail) {
+        public enum Kind { QUALITY, SPEED }
+    }
+
+    private final SolverMode mode;
+    private final Duration timeBudget;
+    private final int warmupIterations;
+    private final int iterations;
+    private final com.sun.management.ThreadMXBean threadBean;
+    private AllocationProfiler allocationProfiler;
+    private int profiledIterations;
+    private final List<CatalogMeasurement> catalogMeasurements = new ArrayList<>();
+
+    /**
+     * Creates a benchmark running the given solver over a corpus of configurations and baskets.
+     *
+     * @param mode             The solver to run.
+     * @param timeBudget       The time available for solvers which can use it.
+     * @param warmupIterations The number of unmeasured splits of every basket.
+     * @param iterations       The number of measured splits of every basket.
+     */
+    public SplitBenchmark(SolverMode mode, Duration timeBudget, int warmupIterations, int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("Number of iterations must be positive: " + iterations);
+        }
+        this.mode = mode;
+        this.timeBudget = timeBudget;
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threadBean = bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ? bean : null;
+    }
+    /**
+     * Makes every basket run additional splits with the allocation profiler after its measured splits,
+     * so that profiling does not distort the measured latency and allocation.
+     *
+     * @param profiler   The profiler collecting allocation by phase.
+     * @param iterations The number of profiled splits of every basket.
+     */
+    public void profileAllocations(AllocationProfiler profiler, int iterations) {
+        this.allocationProfiler = profiler;
+        this.profiledIterations = iterations;
+    }
+    /**
+     * Runs the benchmark over every directory of the corpus holding a config.json file, splitting
+     * each basket-*.json file of that directory with its configuration. A corpus.json file in the directory
+     * may map basket files to other configuration files of the same directory,
+     * e.g. {@code {"basket-3.json": "config1.json"}}.
+     *
+     * @param corpusDirectory The root directory of the corpus.
+     * @return                The measurements, ordered by basket path relative to the corpus root.
+     * @throws IOException if the corpus cannot be read.
+     */
+    public List<Measurement> run(Path corpusDirectory) throws IOException {
+        List<Path> configs;
+        try (Stream<Path> paths = Files.walk(corpusDirectory)) {
+            configs = paths.filter(path -> path.getFileName().toString().equals("config.json")).sorted().collect(Collectors.toList());
+        }
+        List<Measurement> measurements = new ArrayList<>();
+        for (Path config : configs) {
+            Path directory = config.getParent();
+            Path manifest = directory.resolve("corpus.json");
+            Map<String, String> configByBasket = Files.exists(manifest) ? readManifest(manifest) : Map.of();
+            List<Path> baskets;
+            try (Stream<Path> paths = Files.list(directory)) {
+                baskets = paths.filter(path -> path.getFileName().toString().matches("basket-.*\\.json")).sorted().collect(Collectors.toList());
+            }
+            Map<String, BasketSplitter> splitters = new HashMap<>();
+            for (Path basket : baskets) {
+                String configName = configByBasket.getOrDefault(basket.getFileName().toString(), "config.json");
+                BasketSplitter splitter = splitters.computeIfAbsent(configName, name -> {
+                    BasketSplitter created = new BasketSplitter(directory.resolve(name).toAbsolutePath().toString());
+                    DeliveryCatalog catalog = created.getCatalog();
+                    long indexBuildNanos = catalog instanceof CompiledCatalog compiled ? compiled.getIndexBuildTimeNanos() : -1;
+                    String configPath = corpusDirectory.relativize(directory.resolve(name)).toString().replace('\\', '/');
+                    catalogMeasurements.add(new CatalogMeasurement(configPath, catalog.getProductCount(), catalog.getCompanyCount(), indexBuildNanos));
+                    return created;
+                });
+                String name = corpusDirectory.relativize(basket).toString().replace('\\', '/');
+                measurements.add(measure(name, splitter, Utils.readItemsFromJsonFile(basket.toAbsolutePath().toString())));
+            }
+        }
+        return measurements;
+    }
+
+    private static Map<String, String> readManifest(Path manifest) throws IOException {
+        Map<String, String> configByBasket = new HashMap<>();
+        try (Reader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            JSONObject entries = (JSONObject) new JSONParser().parse(reader);
+            for (Object basket : entries.keySet()) {
+                configByBasket.put((String) basket, (String) entries.get(basket));
+            }
+        } catch (org.json.simple.parser.ParseException e) {
+            throw new IOException("Invalid corpus manifest: " + manifest, e);
+        }
+        return configByBasket;
+    }
+    /**
+     * Splits a single basket repeatedly and records the latency percentiles, the average allocation of a split
+     * and the shape of the result.
+     *
+     * @param name     The name of the basket in the report.
+     * @param splitter The splitter holding the delivery configuration.
+     * @param items    The list of items to be split.
+     * @return         The measurement of the basket.
+     */
+    public Measurement measure(String name, BasketSplitter splitter, List<String> items) {
+        for (int i = 0; i < warmupIterations; i++) {
+            mode.split(splitter, items, timeBudget);
+        }
+        long[] latencies = new long[iterations];
+        long allocatedBefore = allocatedBytes();
+        SplitResult result = null;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            result = mode.split(splitter, items, timeBudget);
+            latencies[i] = System.nanoTime() - start;
+        }
+        long allocated = threadBean == null ? -1 : (allocatedBytes() - allocatedBefore) / iterations;
+        if (allocationProfiler != null) {
+            splitter.setAllocationProfiler(allocationProfiler);
+            for (int i = 0; i < profiledIterations; i++) {
+                mode.split(splitter, items, timeBudget);
+            }
+            splitter.setAllocationProfiler(null);
+        }
+        Arrays.sort(latencies);
+
+        int largestGroupSize = 0;
+        for (int group = 0; group < result.getGroupCount(); group++) {
+            largestGroupSize = Math.max(largestGroupSize, result.getGroupSize(group));
+        }
+        return new Measurement(name, items.size(), result.getGroupCount(), largestGroupSize, result.getLowerBound(),
+                result.isCompleted(), percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                latencies[latencies.length - 1], allocated);
+    }
+
+    /**
+     * Returns the configurations loaded by the runs so far.
+     *
+     * @return The size and index build time of every configuration, in loading order.
+     */
+    public List<CatalogMeasurement> getCatalogMeasurements() {
+        return catalogMeasurements;
+    }
+
+    private long allocatedBytes() {
+        return threadBean == null ? 0 : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long percentile(long[] sortedValues, double fraction) {
+        int index = (int) Math.ceil(fraction * sortedValues.length) - 1;
+        return sortedValues[Math.max(0, Math.min(sortedValues.length - 1, index))];
+    }
+    /**
+     * Compares a run with a baseline run. A basket regresses in quality when it needs more deliveries,
+     * or the same number of deliveries with a smaller largest group. It regresses in speed when its median
+     * or 99th percentile latency grows by more than the tolerance. Baskets missing from the baseline are skipped.
+     *
+     * @param current          The measurements of the current run.
+     * @param baseline         The measurements of the baseline run.
+     * @param latencyTolerance The allowed relative growth of latency, e.g. 0.2 for 20%.
+     * @return                 The regressions found, quality regressions first.
+     */
+    public static List<Regression> compare(List<Measurement> current, List<Measurement> baseline, double latencyTolerance) {
+        Map<String, Measurement> baselineByBasket = new HashMap<>();
+        for (Measurement measurement : baseline) {
+            baselineByBasket.put(measurement.basket(), measurement);
+        }
+        List<Regression> quality = new ArrayList<>();
+        List<Regression> speed = new ArrayList<>();
+        for (Measurement now : current) {
+            Measurement before = baselineByBasket.get(now.basket());
+            if (before == null) {
+                continue;
+            }
+            if (now.groupCount() > before.groupCount()) {
+                quality.add(new Regression(now.basket(), Regression.Kind.QUALITY,
+                        "deliveries " + before.groupCount() + " -> " + now.groupCount()));
+            } else if (now.groupCount() == before.groupCount() && now.largestGroupSize() < before.largestGroupSize()) {
+                quality.add(new Regression(now.basket(), Regression.Kind.QUALITY,
+                        "largest group " + before.largestGroupSize() + " -> " + now.largestGroupSize()));
+            }
+            if (isSlower(now.p50Nanos(), before.p50Nanos(), latencyTolerance)) {
+                speed.add(new Regression(now.basket(), Regression.Kind.SPEED,
+                        "p50 " + before.p50Nanos() + " ns -> " + now.p50Nanos() + " ns"));
+            } else if (isSlower(now.p99Nanos(), before.p99Nanos(), latencyTolerance)) {
+                speed.add(new Regression(now.basket(), Regression.Kind.SPEED,
+                        "p99 " + before.p99Nanos() + " ns -> " + now.p99Nanos() + " ns"));
+            }
+        }
+        quality.addAll(speed);
+        return quality;
+    }
+
+    private static boolean isSlower(long now, long before, double latencyTolerance) {
+        return now - before > LATENCY_NOISE_FLOOR_NANOS && now > before * (1 + latencyTolerance);
+    }
+    /**
+     * Serializes a run and its regressions as a JSON report, which can later be read back as a baseline.
+     *
+     * @param mode         The solver of the run.
+     * @param measurements The measurements of the run.
+     * @param regressions  The regressions found against the baseline, empty if there was none.
+     * @return             The JSON report.
+     */
+    public static String toJson(SolverMode mode, List<Measurement> measurements, List<Regression> regressions) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("mode", mode.name());
+        List<Object> baskets = new ArrayList<>();
+        for (Measurement measurement : measurements) {
+            Map<String, Object> basket = new LinkedHashMap<>();
+            basket.put("basket", measurement.basket());
+            basket.put("items", measurement.itemCount());
+            basket.put("groups", measurement.groupCount());
+            basket.put("largestGroup", measurement.largestGroupSize());
+            basket.put("lowerBound", measurement.lowerBound());
+            basket.put("completed", measurement.completed());
+            basket.put("p50Nanos", measurement.p50Nanos());
+            basket.put("p90Nanos", measurement.p90Nanos());
+            basket.put("p99Nanos", measurement.p99Nanos());
+            basket.put("maxNanos", measurement.maxNanos());
+            basket.put("allocatedBytes", measurement.allocatedBytes());
+            baskets.add(basket);
+        }
+        report.put("baskets", baskets);
+        List<Object> found = new ArrayList<>();
+        for (Regression regression : regressions) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("basket", regression.basket());
+            entry.put("kind", regression.kind().name());
+            entry.put("detail", regression.detail());
+            found.add(entry);
+        }
+        report.put("regressions", found);
+        return JSONValue.toJSONString(report);
+    }
+    /**
+     * Reads the measurements of a report written by {@link #toJson}.
+     *
+     * @param reportFile The path to the report.
+     * @return           The measurements of the report.
+     * @throws IOException if the report cannot be read or parsed.
+     */
+    public static List<Measurement> readMeasurements(Path reportFile) throws IOException {
+        JSONObject report;
+        try (Reader reader = Files.newBufferedReader(reportFile, StandardCharsets.UTF_8)) {
+            report = (JSONObject) new JSONParser().parse(reader);
+        } catch (org.json.simple.parser.ParseException e) {
+            throw new IOException("Invalid benchmark report: " + reportFile, e);
+        }
+        List<Measurement> measurements = new ArrayList<>();
+        for (Object entry : (JSONArray) report.get("baskets")) {
+            JSONObject basket = (JSONObject) entry;
+            measurements.add(new Measurement((String) basket.get("basket"), intValue(basket, "items"), intValue(basket, "groups"),
+                    intValue(basket, "largestGroup"), intValue(basket, "lowerBound"), (Boolean) basket.get("completed"),
+                    longValue(basket, "p50Nanos"), longValue(basket, "p90Nanos"), longValue(basket, "p99Nanos"),
+                    longValue(basket, "maxNanos"), longValue(basket, "allocatedBytes")));
+        }
+        return measurements;
+    }
+
+    private static int intValue(JSONObject object, String key) {
+        return ((Number) object.get(key)).intValue();
+    }
+
+    private static long longValue(JSONObject object, String key) {
+        return ((Number) object.get(key)).longValue();
+    }
+    /**
+     * Runs the benchmark from the command line:
+     * {@code SplitBenchmark <corpus directory> [--mode HEURISTIC|EXACT] [--budget-ms N] [--warmup N]
+     * [--iterations N] [--baseline report.json] [--tolerance 0.2] [--report report.json] [--allocation-profile N]}.
+     * With {@code --allocation-profile N} every basket runs N more splits whose allocation is summed up by phase
+     * and basket size in the summary.
+     * The process exits with status 1 if a regression against the baseline was found.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: SplitBenchmark <corpus directory> [--mode HEURISTIC|EXACT] [--budget-ms N] [--warmup N]"
+                    + " [--iterations N] [--baseline report.json] [--tolerance 0.2] [--report report.json] [--allocation-profile N]");
+            System.exit(2);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        SolverMode mode = SolverMode.valueOf(options.getOrDefault("--mode", SolverMode.HEURISTIC.name()));
+        SplitBenchmark benchmark = new SplitBenchmark(mode,
+                Duration.ofMillis(Long.parseLong(options.getOrDefault("--budget-ms", "50"))),
+                Integer.parseInt(options.getOrDefault("--warmup", "20")),
+                Integer.parseInt(options.getOrDefault("--iterations", "100")));
+
+        AllocationProfiler allocationProfiler = null;
+        if (options.containsKey("--allocation-profile")) {
+            allocationProfiler = new AllocationProfiler();
+            benchmark.profileAllocations(allocationProfiler, Integer.parseInt(options.get("--allocation-profile")));
+        }
+
+        List<Measurement> measurements = benchmark.run(Paths.get(args[0]));
+        List<Regression> regressions = new ArrayList<>();
+        if (options.containsKey("--baseline")) {
+            regressions = compare(measurements, readMeasurements(Paths.get(options.get("--baseline"))),
+                    Double.parseDouble(options.getOrDefault("--tolerance", "0.2")));
+        }
+        String report = toJson(mode, measurements, regressions);
+        if (options.containsKey("--report")) {
+            Files.writeString(Paths.get(options.get("--report")), report, StandardCharsets.UTF_8);
+        } else {
+            System.out.println(report);
+        }
+        for (CatalogMeasurement catalog : benchmark.getCatalogMeasurements()) {
+            System.err.printf("%-40s products %7d  companies %5d  index built in %9d ns%n",
+                    catalog.config(), catalog.productCount(), catalog.companyCount(), catalog.indexBuildNanos());
+        }
+        for (Measurement measurement : measurements) {
+            System.err.printf("%-40s items %4d  groups %3d (bound %3d)  largest %4d  p50 %9d ns  p99 %9d ns  %8d B%n",
+                    measurement.basket(), measurement.itemCount(), measurement.groupCount(), measurement.lowerBound(),
+                    measurement.largestGroupSize(), measurement.p50Nanos(), measurement.p99Nanos(), measurement.allocatedBytes());
+        }
+        if (allocationProfiler != null) {
+            System.err.println("Allocated bytes per split by phase:");
+            System.err.println(allocationProfiler.getReport());
+        }
+        for (Regression regression : regressions) {
+            System.err.println(regression.kind() + " regression in " + regression.basket() + ": " + regression.detail());
+        }
+        if (!regressions.isEmpty()) {
+            System.exit(1);
+        }
+    }
+}
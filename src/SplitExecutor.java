@@ -0,0 +1,92 @@
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SplitExecutor implements AutoCloseable {
+    private final ThreadPoolExecutor executor;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Creates an executor for asynchronous splits with a fixed number of threads and a bounded queue.
+     * Splits submitted while the queue is full are rejected with {@link SplitRejectedException}.
+     *
+     * @param threads       The number of threads running splits.
+     * @param queueCapacity The number of splits which can wait for a free thread.
+     * @param name          The prefix of thread names.
+     */
+    public SplitExecutor(int threads, int queueCapacity, String name) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (runnable, pool) -> {
+            if (pool.isShutdown()) {
+                throw new SplitRejectedException("Split executor is closed");
+            }
+            throw new SplitRejectedException("Split queue is full, " + pool.getQueue().size() + " splits are waiting");
+        });
+    }
+    /**
+     * Submits a task, recording the time it waits in the queue.
+     *
+     * @param task The task to run.
+     * @throws SplitRejectedException if the queue is full or the executor is closed.
+     */
+    public void submit(Runnable task) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long waitNanos = System.nanoTime() - enqueuedAt;
+                started.increment();
+                totalWaitNanos.add(waitNanos);
+                maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+                task.run();
+            });
+            submitted.increment();
+        } catch (SplitRejectedException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getStartedCount() {
+        return started.sum();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+    /**
+     * Stops accepting splits, splits already queued still run.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
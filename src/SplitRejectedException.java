@@ -0,0 +1,7 @@
+public class SplitRejectedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public SplitRejectedException(String message) {
+        super(message);
+    }
+}
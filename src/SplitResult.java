@@ -0,0 +1,195 @@
+import java.util.*;
+
+public class SplitResult {
+    private final DeliveryCatalog catalog;
+    private final int[] companyIds;
+    private final int[] groupOffsets;
+    private final int[] productIds;
+    private final int lowerBound;
+    private final boolean completed;
+    private volatile Map<String, List<String>> deliveryGroups;
+
+    /**
+     * Creates a result from delivery groups stored as catalog IDs. Items of group {@code g} are
+     * {@code productIds[groupOffsets[g]]} to {@code productIds[groupOffsets[g + 1] - 1]}.
+     * The arrays are owned by the result and must not be modified afterwards.
+     *
+     * @param catalog      The compiled delivery configuration the IDs refer to.
+     * @param companyIds   The company ID of every group.
+     * @param groupOffsets The offsets of groups in the product array, one more than the number of groups.
+     * @param productIds   The product IDs of all groups, group after group.
+     * @param lowerBound   The lower bound on the number of delivery groups.
+     * @param completed    True if every stage of the search ran to completion.
+     */
+    SplitResult(DeliveryCatalog catalog, int[] companyIds, int[] groupOffsets, int[] productIds, int lowerBound, boolean completed) {
+        this.catalog = catalog;
+        this.companyIds = companyIds;
+        this.groupOffsets = groupOffsets;
+        this.productIds = productIds;
+        this.lowerBound = lowerBound;
+        this.completed = completed;
+    }
+    /**
+     * Creates a result from the company assigned to every basket item.
+     * Groups are ordered by their first item in the basket and keep the basket order of items.
+     *
+     * @param basket     The compiled basket.
+     * @param owners     The company ID assigned to every basket position, or -1 for items which are not delivered.
+     * @param lowerBound The lower bound on the number of delivery groups.
+     * @param completed  True if every stage of the search ran to completion.
+     * @return           The compact result.
+     */
+    public static SplitResult fromAssignment(BasketMatrix basket, int[] owners, int lowerBound, boolean completed) {
+        return fromAssignment(basket, BasketLines.uncollapsed(basket.getItems()), owners, lowerBound, completed);
+    }
+    /**
+     * Creates a result from the company assigned to every line of a basket compiled from its distinct items.
+     * Lines are expanded back to the basket they were collapsed from: every copy of an item joins the group
+     * of its line at its own basket position, as if the basket had been split item by item.
+     *
+     * @param basket     The basket compiled from the distinct items of the lines.
+     * @param lines      The lines of the basket.
+     * @param owners     The company ID assigned to every line, or -1 for items which are not delivered.
+     * @param lowerBound The lower bound on the number of delivery groups.
+     * @param completed  True if every stage of the search ran to completion.
+     * @return           The compact result.
+     */
+    public static SplitResult fromAssignment(BasketMatrix basket, BasketLines lines, int[] owners, int lowerBound, boolean completed) {
+        DeliveryCatalog catalog = basket.getCatalog();
+        int[] groupOfCompany = new int[catalog.getCompanyCount()];
+        Arrays.fill(groupOfCompany, -1);
+        int[] companyIds = new int[Math.min(owners.length, catalog.getCompanyCount())];
+        int[] groupSizes = new int[companyIds.length];
+        int groupCount = 0;
+        int itemCount = 0;
+        for (int position = 0; position < lines.getItemCount(); position++) {
+            int owner = owners[lines.getLine(position)];
+            if (owner < 0) {
+                continue;
+            }
+            if (groupOfCompany[owner] < 0) {
+                groupOfCompany[owner] = groupCount;
+                companyIds[groupCount++] = owner;
+            }
+            groupSizes[groupOfCompany[owner]]++;
+            itemCount++;
+        }
+
+        int[] groupOffsets = new int[groupCount + 1];
+        for (int group = 0; group < groupCount; group++) {
+            groupOffsets[group + 1] = groupOffsets[group] + groupSizes[group];
+        }
+        int[] productIds = new int[itemCount];
+        int[] positions = Arrays.copyOf(groupOffsets, groupCount);
+        for (int position = 0; position < lines.getItemCount(); position++) {
+            int line = lines.getLine(position);
+            if (owners[line] >= 0) {
+                productIds[positions[groupOfCompany[owners[line]]]++] = basket.getProductId(line);
+            }
+        }
+        return new SplitResult(catalog, Arrays.copyOf(companyIds, groupCount), groupOffsets, productIds, lowerBound, completed);
+    }
+
+    public int getGroupCount() {
+        return companyIds.length;
+    }
+
+    public int getGroupSize(int group) {
+        return groupOffsets[group + 1] - groupOffsets[group];
+    }
+
+    public int getCompanyId(int group) {
+        return companyIds[group];
+    }
+
+    public String getCompanyName(int group) {
+        return catalog.getCompanyName(companyIds[group]);
+    }
+    /**
+     * Returns the catalog ID of an item of the given group.
+     *
+     * @param group The index of the group.
+     * @param index The position of the item in the group.
+     * @return      The product ID.
+     */
+    public int getProductId(int group, int index) {
+        if (index < 0 || index >= getGroupSize(group)) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for group of size " + getGroupSize(group));
+        }
+        return productIds[groupOffsets[group] + index];
+    }
+
+    public String getItemName(int group, int index) {
+        return catalog.getProductName(getProductId(group, index));
+    }
+
+    public DeliveryCatalog getCatalog() {
+        return catalog;
+    }
+    /**
+     * Returns the delivery pools produced by the split. The map is built on the first call and shared afterwards,
+     * so it cannot be modified.
+     *
+     * @return A map representing the delivery pools.
+     */
+    public Map<String, List<String>> getDeliveryGroups() {
+        Map<String, List<String>> groups = deliveryGroups;
+        if (groups == null) {
+            groups = new HashMap<>();
+            for (int group = 0; group < companyIds.length; group++) {
+                groups.put(getCompanyName(group), Collections.unmodifiableList(getGroupItems(group)));
+            }
+            groups = Collections.unmodifiableMap(groups);
+            deliveryGroups = groups;
+        }
+        return groups;
+    }
+    /**
+     * Builds a new copy of the delivery pools owned by the caller, which can modify it.
+     *
+     * @return A map representing the delivery pools.
+     */
+    public Map<String, List<String>> copyDeliveryGroups() {
+        Map<String, List<String>> groups = new HashMap<>();
+        for (int group = 0; group < companyIds.length; group++) {
+            groups.put(getCompanyName(group), getGroupItems(group));
+        }
+        return groups;
+    }
+
+    private List<String> getGroupItems(int group) {
+        List<String> items = new ArrayList<>(getGroupSize(group));
+        for (int position = groupOffsets[group]; position < groupOffsets[group + 1]; position++) {
+            items.add(catalog.getProductName(productIds[position]));
+        }
+        return items;
+    }
+    /**
+     * Returns the lower bound on the number of delivery groups computed for the basket.
+     *
+     * @return The minimum number of delivery groups any valid split of the basket must contain.
+     */
+    public int getLowerBound() {
+        return lowerBound;
+    }
+    /**
+     * Checks whether the split is proven to use the minimum number of delivery groups,
+     * which is the case when the number of groups reached the lower bound.
+     *
+     * @return True if the number of delivery groups equals the lower bound, false otherwise.
+     */
+    public boolean isProvenOptimal() {
+        return companyIds.length == lowerBound;
+    }
+    /**
+     * Checks whether the search finished before its deadline. A split cut by the deadline is still valid,
+     * but it may use more delivery groups than a complete search would. The final assignment also counts as cut
+     * when it ran out of tied branches before the number of groups reached the lower bound,
+     * since its groups may then not be the largest possible.
+     *
+     * @return True if every stage of the search ran to completion, false if the deadline or the tie cap stopped it.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class SplitResultJsonWriter {
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private SplitResultJsonWriter() {
+    }
+    /**
+     * Encodes a string as a quoted JSON string in UTF-8.
+     *
+     * @param value The string to encode.
+     * @return      The UTF-8 bytes of the quoted and escaped string.
+     */
+    public static byte[] encodeJsonString(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            switch (character) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (character < 0x20) {
+                        escaped.append("\\u00").append((char) HEX_DIGITS[character >> 4]).append((char) HEX_DIGITS[character & 0xF]);
+                    } else {
+                        escaped.append(character);
+                    }
+                }
+            }
+        }
+        return escaped.append('"').toString().getBytes(StandardCharsets.UTF_8);
+    }
+    /**
+     * Computes the number of bytes the JSON form of the result takes.
+     *
+     * @param result The split result.
+     * @return       The size of the JSON form in bytes.
+     */
+    public static int serializedSize(SplitResult result) {
+        DeliveryCatalog catalog = result.getCatalog();
+        // Braces of the object
+        int size = 2;
+        for (int group = 0; group < result.getGroupCount(); group++) {
+            // Separator between groups, colon and brackets of the array
+            size += (group > 0 ? 1 : 0) + 3 + catalog.getCompanyNameJson(result.getCompanyId(group)).length;
+            for (int index = 0; index < result.getGroupSize(group); index++) {
+                size += (index > 0 ? 1 : 0) + catalog.getProductNameJsonLength(result.getProductId(group, index));
+            }
+        }
+        return size;
+    }
+    /**
+     * Writes the result as a JSON object mapping company names to arrays of items, the same shape as the stored answers.
+     * Names are copied from their encoded form kept by the catalog, no intermediate strings are built.
+     * Callers writing to unbuffered streams should wrap them in a {@link java.io.BufferedOutputStream}.
+     *
+     * @param result The split result.
+     * @param output The stream to write to.
+     * @throws IOException If writing to the stream fails.
+     */
+    public static void writeTo(SplitResult result, OutputStream output) throws IOException {
+        DeliveryCatalog catalog = result.getCatalog();
+        output.write('{');
+        for (int group = 0; group < result.getGroupCount(); group++) {
+            if (group > 0) {
+                output.write(',');
+            }
+            output.write(catalog.getCompanyNameJson(result.getCompanyId(group)));
+            output.write(':');
+            output.write('[');
+            for (int index = 0; index < result.getGroupSize(group); index++) {
+                if (index > 0) {
+                    output.write(',');
+                }
+                output.write(catalog.getProductNameJson(result.getProductId(group, index)));
+            }
+            output.write(']');
+        }
+        output.write('}');
+    }
+    /**
+     * Writes the result as a JSON object into the buffer, starting at its position.
+     * Use {@link #serializedSize(SplitResult)} to make sure the buffer has enough room.
+     *
+     * @param result The split result.
+     * @param buffer The buffer to write to.
+     * @throws java.nio.BufferOverflowException If the buffer has not enough room for the result.
+     */
+    public static void writeTo(SplitResult result, ByteBuffer buffer) {
+        DeliveryCatalog catalog = result.getCatalog();
+        buffer.put((byte) '{');
+        for (int group = 0; group < result.getGroupCount(); group++) {
+            if (group > 0) {
+                buffer.put((byte) ',');
+            }
+            buffer.put(catalog.getCompanyNameJson(result.getCompanyId(group)));
+            buffer.put((byte) ':').put((byte) '[');
+            for (int index = 0; index < result.getGroupSize(group); index++) {
+                if (index > 0) {
+                    buffer.put((byte) ',');
+                }
+                catalog.putProductNameJson(result.getProductId(group, index), buffer);
+            }
+            buffer.put((byte) ']');
+        }
+        buffer.put((byte) '}');
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class SplitScheduler implements AutoCloseable {
+    /**
+     * Lanes splits are routed to.
+     */
+    public enum Lane {
+        FAST, HEAVY
+    }
+
+    /**
+     * Queueing metrics of a lane at the time of the call.
+     */
+    public record LaneMetrics(Lane lane, long submitted, long rejected, long started, int queueDepth, int active,
+                              long totalWaitNanos, long maxWaitNanos) {
+        public long getMeanWaitNanos() {
+            return started == 0 ? 0 : totalWaitNanos / started;
+        }
+    }
+
+    private final BasketSplitter basketSplitter;
+    private final DeliveryCatalog catalog;
+    private final long costThreshold;
+    private final SplitExecutor fastLane;
+    private final SplitExecutor heavyLane;
+
+    /**
+     * Creates a scheduler routing every basket by its estimated cost: cheap baskets go to a fast lane,
+     * expensive ones to a heavy lane whose number of threads caps how many of them are split at the same time.
+     * Each lane has its own threads and its own bounded queue, so a burst of expensive baskets queues
+     * behind the heavy lane only and never delays the cheap ones.
+     *
+     * @param basketSplitter The splitter used for every basket.
+     * @param fastThreads    The number of threads of the fast lane.
+     * @param heavyThreads   The maximum number of expensive baskets split at the same time.
+     * @param queueCapacity  The number of splits which can wait in each lane.
+     * @param costThreshold  The largest estimated cost routed to the fast lane, see {@link #estimateCost(List)}.
+     */
+    public SplitScheduler(BasketSplitter basketSplitter, int fastThreads, int heavyThreads, int queueCapacity, long costThreshold) {
+        this.basketSplitter = basketSplitter;
+        this.catalog = basketSplitter.getCatalog();
+        this.costThreshold = costThreshold;
+        this.fastLane = new SplitExecutor(fastThreads, queueCapacity, "split-fast");
+        this.heavyLane = new SplitExecutor(heavyThreads, queueCapacity, "split-heavy");
+    }
+    /**
+     * Estimates the cost of splitting a basket as the number of distinct items times the number of companies
+     * able to deliver at least one of them. Repeated items are not counted, since the solver only sees them once.
+     *
+     * @param items The list of items to be split.
+     * @return      The estimated cost.
+     */
+    public long estimateCost(List<String> items) {
+        List<String> distinctItems = BasketLines.of(items).getDistinctItems();
+        long[] companies = new long[Bitsets.wordCount(catalog.getCompanyCount())];
+        for (String item : distinctItems) {
+            int productId = catalog.getProductId(item);
+            if (productId < 0) {
+                continue;
+            }
+            for (int word = 0; word < companies.length; word++) {
+                companies[word] |= catalog.getCompanyMaskWord(productId, word);
+            }
+        }
+        return (long) distinctItems.size() * Bitsets.popCount(companies);
+    }
+    /**
+     * Returns the lane the basket is routed to.
+     *
+     * @param items The list of items to be split.
+     * @return      The fast lane if the estimated cost does not exceed the threshold, the heavy lane otherwise.
+     */
+    public Lane classify(List<String> items) {
+        return estimateCost(items) <= costThreshold ? Lane.FAST : Lane.HEAVY;
+    }
+    /**
+     * Splits the basket asynchronously on the lane matching its estimated cost.
+     * When the queue of that lane is full the returned future fails with {@link SplitRejectedException}.
+     *
+     * @param items The list of items to be split.
+     * @return      A future completed with the delivery pools together with the lower bound.
+     */
+    public CompletableFuture<SplitResult> submit(List<String> items) {
+        return basketSplitter.splitAsync(items, classify(items) == Lane.FAST ? fastLane : heavyLane);
+    }
+    /**
+     * Returns the queueing metrics of a lane.
+     *
+     * @param lane The lane.
+     * @return     The metrics at the time of the call.
+     */
+    public LaneMetrics getMetrics(Lane lane) {
+        SplitExecutor executor = lane == Lane.FAST ? fastLane : heavyLane;
+        return new LaneMetrics(lane, executor.getSubmittedCount(), executor.getRejectedCount(), executor.getStartedCount(),
+                executor.getQueueDepth(), executor.getActiveCount(), executor.getTotalWaitNanos(), executor.getMaxWaitNanos());
+    }
+
+    public long getCostThreshold() {
+        return costThreshold;
+    }
+    /**
+     * Stops accepting splits in both lanes, splits already queued still run.
+     */
+    @Override
+    public void close() {
+        fastLane.close();
+        heavyLane.close();
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+public class SplitSidecarClient implements AutoCloseable {
+    // Bytes of requests sent ahead of their replies by splitAll. Replies take about as many bytes as their requests,
+    // so while the window stays well under the socket buffers and the 64 KB reply buffer of the server,
+    // the server never blocks on replies which the client, still writing requests, does not read yet
+    private static final int PIPELINE_WINDOW_BYTES = 32 << 10;
+
+    /**
+     * Configuration served by the sidecar, needed to send baskets as catalog IDs.
+     */
+    public record Catalog(long configHash, List<String> companyNames, List<String> productNames) {
+    }
+
+    private final SocketChannel channel;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+    private final DataOutputStream request = new DataOutputStream(requestBytes);
+    private int nextRequestId;
+
+    private SplitSidecarClient(SocketChannel channel) {
+        this.channel = channel;
+        this.input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 << 10));
+        this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 << 10));
+    }
+    /**
+     * Connects to a sidecar started with {@link SplitSidecarServer}. A client is a single connection
+     * and must not be shared by threads; open one client per thread instead.
+     *
+     * @param socketPath The path of the socket file.
+     * @return           The connected client.
+     * @throws IOException if the sidecar cannot be reached.
+     */
+    public static SplitSidecarClient connect(Path socketPath) throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new SplitSidecarClient(channel);
+    }
+    /**
+     * Splits a basket by item names.
+     *
+     * @param items The list of items to be split.
+     * @return      A map representing the delivery pools.
+     * @throws IOException if the connection fails or the sidecar rejects the request.
+     */
+    public Map<String, List<String>> split(List<String> items) throws IOException {
+        int requestId = sendNames(items);
+        output.flush();
+        return readNamesReply(requestId);
+    }
+    /**
+     * Splits a basket given as item quantities, every item is listed as many times as its quantity in its pool.
+     *
+     * @param itemQuantities The quantity of every item.
+     * @return               A map representing the delivery pools.
+     * @throws IOException if the connection fails or the sidecar rejects the request.
+     */
+    public Map<String, List<String>> split(Map<String, Integer> itemQuantities) throws IOException {
+        int requestId = beginRequest(SplitSidecarServer.KIND_SPLIT_NAMES);
+        request.writeInt(itemQuantities.size());
+        for (Map.Entry<String, Integer> entry : itemQuantities.entrySet()) {
+            SplitSidecarServer.writeString(request, entry.getKey());
+            request.writeInt(entry.getValue());
+        }
+        endRequest();
+        output.flush();
+        return readNamesReply(requestId);
+    }
+    /**
+     * Splits a basket given as catalog IDs, see {@link #fetchCatalog()}.
+     *
+     * @param productIds The product ID of every item.
+     * @return           The product IDs of every group by company ID, copies included.
+     * @throws IOException if the connection fails or the sidecar rejects the request.
+     */
+    public Map<Integer, int[]> splitIds(int[] productIds) throws IOException {
+        int requestId = beginRequest(SplitSidecarServer.KIND_SPLIT_IDS);
+        request.writeInt(productIds.length);
+        for (int productId : productIds) {
+            request.writeInt(productId);
+            request.writeInt(1);
+        }
+        endRequest();
+        output.flush();
+
+        ByteBuffer reply = readReply(requestId);
+        reply.getInt();
+        reply.get();
+        int groupCount = reply.getInt();
+        Map<Integer, int[]> groups = new HashMap<>();
+        for (int group = 0; group < groupCount; group++) {
+            int companyId = reply.getInt();
+            int entryCount = reply.getInt();
+            int[] entryProductIds = new int[entryCount];
+            int[] quantities = new int[entryCount];
+            int size = 0;
+            for (int entry = 0; entry < entryCount; entry++) {
+                entryProductIds[entry] = reply.getInt();
+                quantities[entry] = reply.getInt();
+                size += quantities[entry];
+            }
+            int[] groupProductIds = new int[size];
+            for (int entry = 0, position = 0; entry < entryCount; position += quantities[entry], entry++) {
+                Arrays.fill(groupProductIds, position, position + quantities[entry], entryProductIds[entry]);
+            }
+            groups.put(companyId, groupProductIds);
+        }
+        return groups;
+    }
+    /**
+     * Splits baskets by item names, sending requests ahead of the replies over the single connection.
+     * Requests are sent while the bytes of requests without a reply stay within a window, a larger request
+     * waits until every earlier reply has been read and is then sent alone.
+     *
+     * @param baskets The baskets to be split.
+     * @return        The delivery pools of every basket, in the order of baskets.
+     * @throws IOException if the connection fails or the sidecar rejects a request.
+     */
+    public List<Map<String, List<String>>> splitAll(List<List<String>> baskets) throws IOException {
+        List<Map<String, List<String>>> results = new ArrayList<>(baskets.size());
+        int[] requestIds = new int[baskets.size()];
+        int[] requestSizes = new int[baskets.size()];
+        long pendingBytes = 0;
+        int sent = 0;
+        boolean encoded = false;
+        while (results.size() < baskets.size()) {
+            if (sent < baskets.size() && !encoded) {
+                requestIds[sent] = encodeNames(baskets.get(sent));
+                requestSizes[sent] = 4 + requestBytes.size();
+                encoded = true;
+            }
+            if (encoded && (sent == results.size() || pendingBytes + requestSizes[sent] <= PIPELINE_WINDOW_BYTES)) {
+                endRequest();
+                pendingBytes += requestSizes[sent++];
+                encoded = false;
+                continue;
+            }
+            output.flush();
+            pendingBytes -= requestSizes[results.size()];
+            results.add(readNamesReply(requestIds[results.size()]));
+        }
+        return results;
+    }
+    /**
+     * Fetches the configuration served by the sidecar, one page of names per request. Its hash changes whenever the IDs do.
+     *
+     * @return The configuration hash together with company and product names in ID order.
+     * @throws IOException if the connection fails or the configuration changes between pages.
+     */
+    public Catalog fetchCatalog() throws IOException {
+        List<String> names = new ArrayList<>();
+        long configHash = 0;
+        int companyCount = 0;
+        int nameCount = 1;
+        while (names.size() < nameCount) {
+            int requestId = beginRequest(SplitSidecarServer.KIND_CATALOG);
+            request.writeInt(names.size());
+            endRequest();
+            output.flush();
+            ByteBuffer reply = readReply(requestId);
+            long pageHash = reply.getLong();
+            if (!names.isEmpty() && pageHash != configHash) {
+                throw new IOException("Configuration changed while fetching the catalog");
+            }
+            configHash = pageHash;
+            companyCount = reply.getInt();
+            nameCount = companyCount + reply.getInt();
+            int pageNameCount = reply.getInt();
+            if (pageNameCount == 0 && names.size() < nameCount) {
+                throw new IOException("Empty catalog page at name " + names.size());
+            }
+            for (int name = pageNameCount; name > 0; name--) {
+                names.add(SplitSidecarServer.readString(reply));
+            }
+        }
+        return new Catalog(configHash, List.copyOf(names.subList(0, companyCount)), List.copyOf(names.subList(companyCount, nameCount)));
+    }
+
+    private int sendNames(List<String> items) throws IOException {
+        int requestId = encodeNames(items);
+        endRequest();
+        return requestId;
+    }
+
+    private int encodeNames(List<String> items) throws IOException {
+        int requestId = beginRequest(SplitSidecarServer.KIND_SPLIT_NAMES);
+        request.writeInt(items.size());
+        for (String item : items) {
+            SplitSidecarServer.writeString(request, item);
+            request.writeInt(1);
+        }
+        return requestId;
+    }
+
+    private int beginRequest(byte kind) throws IOException {
+        int requestId = nextRequestId++;
+        requestBytes.reset();
+        request.writeInt(requestId);
+        request.writeByte(kind);
+        return requestId;
+    }
+
+    private void endRequest() throws IOException {
+        output.writeInt(requestBytes.size());
+        requestBytes.writeTo(output);
+    }
+
+    private Map<String, List<String>> readNamesReply(int requestId) throws IOException {
+        ByteBuffer reply = readReply(requestId);
+        reply.getInt();
+        reply.get();
+        int groupCount = reply.getInt();
+        Map<String, List<String>> groups = new HashMap<>();
+        for (int group = 0; group < groupCount; group++) {
+            String company = SplitSidecarServer.readString(reply);
+            int entryCount = reply.getInt();
+            List<String> items = new ArrayList<>(entryCount);
+            for (int entry = 0; entry < entryCount; entry++) {
+                String item = SplitSidecarServer.readString(reply);
+                for (int copy = reply.getInt(); copy > 0; copy--) {
+                    items.add(item);
+                }
+            }
+            groups.put(company, items);
+        }
+        return groups;
+    }
+    /**
+     * Reads the next reply, which answers the oldest request without a reply.
+     *
+     * @param requestId The ID of that request.
+     * @return          The content of the reply after its status.
+     * @throws IOException if the connection fails, the reply does not match or reports an error.
+     */
+    private ByteBuffer readReply(int requestId) throws IOException {
+        int length = input.readInt();
+        if (length < 5 || length > SplitSidecarServer.MAX_FRAME_BYTES) {
+            throw new IOException("Invalid reply length: " + length);
+        }
+        byte[] frame = new byte[length];
+        input.readFully(frame);
+        ByteBuffer reply = ByteBuffer.wrap(frame);
+        if (reply.getInt() != requestId) {
+            throw new IOException("Reply does not match request " + requestId);
+        }
+        if (reply.get() == SplitSidecarServer.STATUS_ERROR) {
+            throw new IOException("Sidecar rejected request " + requestId + ": " + SplitSidecarServer.readString(reply));
+        }
+        return reply;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
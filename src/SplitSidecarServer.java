@@ -0,0 +1,367 @@
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SplitSidecarServer implements AutoCloseable {
+    static final byte KIND_SPLIT_NAMES = 1;
+    static final byte KIND_SPLIT_IDS = 2;
+    static final byte KIND_CATALOG = 3;
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    static final int MAX_FRAME_BYTES = 16 << 20;
+    // Items of a split request, copies included, accepted by default; results hold every copy
+    static final int DEFAULT_MAX_ITEM_COUNT = 1 << 16;
+    // Names in a catalog reply, leaving room for the request ID, the status, the hash and the counts
+    private static final int CATALOG_PAGE_BYTES = MAX_FRAME_BYTES - 64;
+    private static final int BUFFER_BYTES = 64 << 10;
+
+    private final BasketSplitter basketSplitter;
+    private final DeliveryCatalog catalog;
+    private final long configHash;
+    private final int maxItemCount;
+    private final Path socketPath;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService connectionExecutor;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    // UTF-8 names by catalog ID, so that replies do not encode them again
+    private final byte[][] productNames;
+    private final byte[][] companyNames;
+    private final Thread acceptor;
+
+    /**
+     * Starts serving the splitter on a Unix domain socket. Every connection is served by its own thread,
+     * a virtual one when the JVM provides them (Java 21 and later), and splits run on that thread.
+     *
+     * Every message is a frame: its length in bytes as a big-endian int, then the request ID chosen by the
+     * client, echoed by the reply, and the content. Strings are UTF-8 bytes preceded by their length as a short.
+     * <ul>
+     *     <li>Split by names, kind 1: entry count, then (item name, quantity) per entry.</li>
+     *     <li>Split by catalog IDs, kind 2: entry count, then (product ID, quantity) per entry.</li>
+     *     <li>Catalog, kind 3: the offset of the first name. Names are the company names followed by the product
+     *     names, both in ID order, so that clients can use IDs. Returns the configuration hash, the company count,
+     *     the product count and a page of names from the offset, its name count then the names. Pages stay
+     *     within the largest frame, clients ask for the next offset until they have every name.</li>
+     * </ul>
+     * A split reply holds the status byte, the lower bound, the completion flag as a byte and the group count,
+     * then for every group its company, its entry count and (item, quantity) per entry, where consecutive copies
+     * of an item are one entry. Companies and items are names or IDs like in the request. An error reply holds
+     * the status byte and a message. Replies come in the order of requests, so requests can be pipelined.
+     *
+     * Split requests holding more than {@value #DEFAULT_MAX_ITEM_COUNT} items, copies included, get an error reply.
+     *
+     * @param basketSplitter The splitter serving the requests.
+     * @param socketPath     The path of the socket file, which must not exist.
+     * @throws IOException if the socket cannot be bound.
+     */
+    public SplitSidecarServer(BasketSplitter basketSplitter, Path socketPath) throws IOException {
+        this(basketSplitter, socketPath, DEFAULT_MAX_ITEM_COUNT);
+    }
+    /**
+     * Starts serving the splitter on a Unix domain socket, see {@link #SplitSidecarServer(BasketSplitter, Path)}.
+     * Results hold every copy of an item, so the cap on items bounds the memory a single request can take.
+     *
+     * @param basketSplitter The splitter serving the requests.
+     * @param socketPath     The path of the socket file, which must not exist.
+     * @param maxItemCount   The largest number of items of a split request, copies included, larger ones get an error reply.
+     * @throws IOException if the socket cannot be bound.
+     */
+    public SplitSidecarServer(BasketSplitter basketSplitter, Path socketPath, int maxItemCount) throws IOException {
+        this.basketSplitter = basketSplitter;
+        this.maxItemCount = maxItemCount;
+        this.catalog = basketSplitter.getCatalog();
+        this.configHash = AnswerStore.configHash(catalog);
+        this.socketPath = socketPath;
+        this.productNames = new byte[catalog.getProductCount()][];
+        for (int productId = 0; productId < productNames.length; productId++) {
+            productNames[productId] = catalog.getProductName(productId).getBytes(StandardCharsets.UTF_8);
+        }
+        this.companyNames = new byte[catalog.getCompanyCount()][];
+        for (int companyId = 0; companyId < companyNames.length; companyId++) {
+            companyNames[companyId] = catalog.getCompanyName(companyId).getBytes(StandardCharsets.UTF_8);
+        }
+        this.serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        serverChannel.bind(UnixDomainSocketAddress.of(socketPath));
+        this.connectionExecutor = newConnectionExecutor();
+        this.acceptor = new Thread(this::acceptConnections, "split-sidecar-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    /**
+     * Creates an executor starting a virtual thread per connection, looked up reflectively so that the server
+     * also runs on Java 17, where connections get daemon platform threads instead.
+     *
+     * @return The executor running connections.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadCounter = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "split-sidecar-connection-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void acceptConnections() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                connections.add(channel);
+                connectionExecutor.execute(() -> serve(channel));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                errors.increment();
+            }
+        }
+    }
+    /**
+     * Answers the requests of one connection until the client closes it. The output is only flushed
+     * when no further request is buffered, so that the replies of pipelined requests share writes.
+     *
+     * @param channel The connection.
+     */
+    private void serve(SocketChannel channel) {
+        try (channel;
+             DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_BYTES));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES))) {
+            ByteArrayOutputStream replyBytes = new ByteArrayOutputStream();
+            DataOutputStream reply = new DataOutputStream(replyBytes);
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (length < 5 || length > MAX_FRAME_BYTES) {
+                    // The stream cannot be resynchronized after a broken frame
+                    errors.increment();
+                    return;
+                }
+                byte[] frame = new byte[length];
+                input.readFully(frame);
+                ByteBuffer request = ByteBuffer.wrap(frame);
+                int requestId = request.getInt();
+                replyBytes.reset();
+                reply.writeInt(requestId);
+                try {
+                    handle(request, reply);
+                } catch (RuntimeException e) {
+                    errors.increment();
+                    replyBytes.reset();
+                    reply.writeInt(requestId);
+                    reply.writeByte(STATUS_ERROR);
+                    writeString(reply, e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+                }
+                requests.increment();
+                output.writeInt(replyBytes.size());
+                replyBytes.writeTo(output);
+                if (input.available() == 0) {
+                    output.flush();
+                }
+            }
+        } catch (IOException e) {
+            if (channel.isOpen()) {
+                errors.increment();
+            }
+        } finally {
+            connections.remove(channel);
+        }
+    }
+
+    private void handle(ByteBuffer request, DataOutputStream reply) throws IOException {
+        byte kind = request.get();
+        switch (kind) {
+            case KIND_SPLIT_NAMES, KIND_SPLIT_IDS -> {
+                boolean names = kind == KIND_SPLIT_NAMES;
+                int entryCount = request.getInt();
+                if (entryCount < 0 || entryCount > request.remaining() / 6) {
+                    throw new IllegalArgumentException("Invalid entry count: " + entryCount);
+                }
+                List<String> items = new ArrayList<>(entryCount);
+                Map<String, Integer> itemQuantities = new LinkedHashMap<>();
+                boolean repeated = false;
+                long itemCount = 0;
+                for (int entry = 0; entry < entryCount; entry++) {
+                    String item = names ? readString(request) : catalog.getProductName(checkProductId(request.getInt()));
+                    int quantity = request.getInt();
+                    if (quantity <= 0) {
+                        throw new IllegalArgumentException("Quantity of " + item + " must be positive: " + quantity);
+                    }
+                    itemCount += quantity;
+                    if (itemCount > maxItemCount) {
+                        throw new IllegalArgumentException("Basket holds more than " + maxItemCount + " items");
+                    }
+                    repeated |= quantity > 1 || itemQuantities.containsKey(item);
+                    items.add(item);
+                    itemQuantities.merge(item, quantity, Integer::sum);
+                }
+                // Baskets without copies keep their order, copies are grouped with the first entry of their item
+                SplitResult result = repeated ? basketSplitter.splitDetailed(itemQuantities) : basketSplitter.splitDetailed(items);
+                writeSplit(result, names, reply);
+            }
+            case KIND_CATALOG -> {
+                int firstName = request.getInt();
+                int nameCount = companyNames.length + productNames.length;
+                if (firstName < 0 || firstName > nameCount) {
+                    throw new IllegalArgumentException("Invalid catalog offset: " + firstName);
+                }
+                // A name takes at most 64 KB, so a page always holds at least one
+                int endName = firstName;
+                for (long pageBytes = 0; endName < nameCount; endName++) {
+                    pageBytes += 2 + catalogName(endName).length;
+                    if (pageBytes > CATALOG_PAGE_BYTES) {
+                        break;
+                    }
+                }
+                reply.writeByte(STATUS_OK);
+                reply.writeLong(configHash);
+                reply.writeInt(companyNames.length);
+                reply.writeInt(productNames.length);
+                reply.writeInt(endName - firstName);
+                for (int name = firstName; name < endName; name++) {
+                    writeBytes(reply, catalogName(name));
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown request kind: " + kind);
+        }
+    }
+
+    private byte[] catalogName(int name) {
+        return name < companyNames.length ? companyNames[name] : productNames[name - companyNames.length];
+    }
+
+    private int checkProductId(int productId) {
+        if (productId < 0 || productId >= catalog.getProductCount()) {
+            throw new IllegalArgumentException("Unknown product ID: " + productId);
+        }
+        return productId;
+    }
+
+    private void writeSplit(SplitResult result, boolean names, DataOutputStream reply) throws IOException {
+        reply.writeByte(STATUS_OK);
+        reply.writeInt(result.getLowerBound());
+        reply.writeBoolean(result.isCompleted());
+        reply.writeInt(result.getGroupCount());
+        for (int group = 0; group < result.getGroupCount(); group++) {
+            if (names) {
+                writeBytes(reply, companyNames[result.getCompanyId(group)]);
+            } else {
+                reply.writeInt(result.getCompanyId(group));
+            }
+            int size = result.getGroupSize(group);
+            int entryCount = 0;
+            for (int index = 0; index < size; index++) {
+                if (index == 0 || result.getProductId(group, index) != result.getProductId(group, index - 1)) {
+                    entryCount++;
+                }
+            }
+            reply.writeInt(entryCount);
+            for (int index = 0; index < size; ) {
+                int productId = result.getProductId(group, index);
+                int quantity = 1;
+                while (index + quantity < size && result.getProductId(group, index + quantity) == productId) {
+                    quantity++;
+                }
+                if (names) {
+                    writeBytes(reply, productNames[productId]);
+                } else {
+                    reply.writeInt(productId);
+                }
+                reply.writeInt(quantity);
+                index += quantity;
+            }
+        }
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        writeBytes(output, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long");
+        }
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    public Path getSocketPath() {
+        return socketPath;
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+    /**
+     * Stops accepting connections, closes the open ones and removes the socket file.
+     *
+     * @throws IOException if the socket file cannot be removed.
+     */
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        for (SocketChannel channel : connections) {
+            channel.close();
+        }
+        connectionExecutor.shutdown();
+        Files.deleteIfExists(socketPath);
+    }
+    /**
+     * Serves a configuration from the command line until the process is stopped:
+     * {@code SplitSidecarServer <config.json> <socket path> [max items]}.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: SplitSidecarServer <config.json> <socket path> [max items]");
+            System.exit(2);
+        }
+        SplitSidecarServer server = new SplitSidecarServer(new BasketSplitter(args[0]), Paths.get(args[1]),
+                args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_ITEM_COUNT);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Cannot remove socket file: " + e.getMessage());
+            }
+        }));
+        System.err.println("Serving " + args[0] + " on " + args[1]);
+        server.acceptor.join();
+    }
+}
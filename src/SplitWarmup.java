@@ -0,0 +1,110 @@
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.*;
+
+public class SplitWarmup {
+    // Basket sizes cycled through, the largest one reaches the parallel decomposition of components
+    private static final int[] BASKET_SIZES = {1, 2, 3, 5, 8, 13, 21, 34, 55, 89, 144, 300};
+    private static final Duration EXACT_TIME_BUDGET = Duration.ofMillis(5);
+
+    /**
+     * Summary of a finished warm-up.
+     */
+    public record Report(int calls, long elapsedNanos, int largestBasketSize) {
+    }
+
+    private final int targetCalls;
+    private final Duration timeBudget;
+    private final long seed;
+
+    /**
+     * Creates a warm-up running splits until the target number of calls or the time budget is reached,
+     * whichever comes first.
+     *
+     * @param targetCalls The number of splits after which the warm-up stops.
+     * @param timeBudget  The time after which the warm-up stops.
+     * @param seed        The seed of the synthesized baskets.
+     */
+    public SplitWarmup(int targetCalls, Duration timeBudget, long seed) {
+        this.targetCalls = targetCalls;
+        this.timeBudget = timeBudget;
+        this.seed = seed;
+    }
+    /**
+     * Splits baskets synthesized from the catalog of the splitter: baskets of growing sizes, alternately drawn
+     * from the products of one to three companies, which gives few large groups, and from the whole catalog,
+     * which gives many small ones. Every basket goes through all solver modes and the JSON writer.
+     *
+     * @param basketSplitter The splitter to warm up.
+     * @return               The summary of the warm-up.
+     */
+    public Report run(BasketSplitter basketSplitter) {
+        DeliveryCatalog catalog = basketSplitter.getCatalog();
+        long start = System.nanoTime();
+        long budgetNanos = timeBudget.toNanos();
+        if (catalog.getProductCount() == 0 || catalog.getCompanyCount() == 0) {
+            return new Report(0, System.nanoTime() - start, 0);
+        }
+        List<List<Integer>> productsOfCompany = productsOfCompany(catalog);
+        Random random = new Random(seed);
+        int calls = 0;
+        int largestBasketSize = 0;
+        for (int round = 0; calls < targetCalls && System.nanoTime() - start < budgetNanos; round++) {
+            int size = Math.min(BASKET_SIZES[round % BASKET_SIZES.length], catalog.getProductCount());
+            List<String> items = round / BASKET_SIZES.length % 2 == 0
+                    ? companyMixBasket(catalog, productsOfCompany, size, random)
+                    : randomBasket(catalog, size, random);
+            largestBasketSize = Math.max(largestBasketSize, items.size());
+            for (SolverMode mode : SolverMode.values()) {
+                SplitResult result = mode.split(basketSplitter, items, EXACT_TIME_BUDGET);
+                ByteBuffer buffer = ByteBuffer.allocate(SplitResultJsonWriter.serializedSize(result));
+                SplitResultJsonWriter.writeTo(result, buffer);
+                result.getDeliveryGroups();
+                calls++;
+            }
+        }
+        return new Report(calls, System.nanoTime() - start, largestBasketSize);
+    }
+
+    private static List<List<Integer>> productsOfCompany(DeliveryCatalog catalog) {
+        List<List<Integer>> productsOfCompany = new ArrayList<>();
+        for (int companyId = 0; companyId < catalog.getCompanyCount(); companyId++) {
+            productsOfCompany.add(new ArrayList<>());
+        }
+        int wordCount = Bitsets.wordCount(catalog.getCompanyCount());
+        for (int productId = 0; productId < catalog.getProductCount(); productId++) {
+            for (int word = 0; word < wordCount; word++) {
+                long mask = catalog.getCompanyMaskWord(productId, word);
+                while (mask != 0) {
+                    productsOfCompany.get(word * 64 + Long.numberOfTrailingZeros(mask)).add(productId);
+                    mask &= mask - 1;
+                }
+            }
+        }
+        return productsOfCompany;
+    }
+
+    private static List<String> companyMixBasket(DeliveryCatalog catalog, List<List<Integer>> productsOfCompany, int size, Random random) {
+        List<Integer> pool = new ArrayList<>();
+        int companyCount = 1 + random.nextInt(Math.min(3, catalog.getCompanyCount()));
+        for (int i = 0; i < companyCount; i++) {
+            pool.addAll(productsOfCompany.get(random.nextInt(catalog.getCompanyCount())));
+        }
+        if (pool.isEmpty()) {
+            return randomBasket(catalog, size, random);
+        }
+        Set<String> items = new LinkedHashSet<>();
+        for (int attempt = 0; items.size() < size && attempt < 4 * size; attempt++) {
+            items.add(catalog.getProductName(pool.get(random.nextInt(pool.size()))));
+        }
+        return new ArrayList<>(items);
+    }
+
+    private static List<String> randomBasket(DeliveryCatalog catalog, int size, Random random) {
+        Set<String> items = new LinkedHashSet<>();
+        for (int attempt = 0; items.size() < size && attempt < 4 * size; attempt++) {
+            items.add(catalog.getProductName(random.nextInt(catalog.getProductCount())));
+        }
+        return new ArrayList<>(items);
+    }
+}
@@ -1,17 +1,42 @@
+import javafx.util.Pair;
 import junit.framework.TestCase;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
 public class BasketSplitterTest extends TestCase {
     @Nested
@@ -142,26 +167,905 @@ public class BasketSplitterTest extends TestCase {
         }
     }
     @Test
-    public void testCanItemBeDeliveredByCompany() {
+    public void testSplitReportsLowerBound() {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-2.json").getAbsolutePath());
+        SplitResult result = basketSplitter.splitDetailed(items);
+
+        assertEquals(3, result.getLowerBound());
+        assertTrue(result.isProvenOptimal());
+
+        SplitResult singleItemResult = basketSplitter.splitDetailed(List.of("Fond - Chocolate"));
+        assertEquals(1, singleItemResult.getLowerBound());
+        assertTrue(singleItemResult.isProvenOptimal());
+    }
+    @Test
+    public void testForcedAssignmentReduction() {
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        deliveryConfigMap.put("Item1", List.of("Company1"));
+        deliveryConfigMap.put("Item2", Arrays.asList("Company1", "Company2"));
+        deliveryConfigMap.put("Item3", Arrays.asList("Company2", "Company3"));
+
+        BasketMatrix basket = BasketMatrix.compile(new CompiledCatalog(deliveryConfigMap), List.of("Item1", "Item2", "Item3"));
+        ForcedAssignmentReducer.Reduction reduction = ForcedAssignmentReducer.reduce(basket);
+
+        assertEquals(Map.of("Company1", List.of("Item1", "Item2")), reduction.getForcedGroups());
+        assertEquals(List.of("Item3"), reduction.getResidualItems());
+
+        // A forced company found later also absorbs the residual items before its own
+        deliveryConfigMap.put("Item4", List.of("Company3"));
+        basket = BasketMatrix.compile(new CompiledCatalog(deliveryConfigMap), List.of("Item1", "Item2", "Item3", "Item4"));
+        reduction = ForcedAssignmentReducer.reduce(basket);
+
+        assertEquals(Map.of("Company1", List.of("Item1", "Item2"), "Company3", List.of("Item3", "Item4")), reduction.getForcedGroups());
+        assertEquals(List.of(), reduction.getResidualItems());
+    }
+    @Test
+    public void testDominatedCompaniesArePruned() {
         Map<String, List<String>> deliveryConfigMap = new HashMap<>();
         deliveryConfigMap.put("Item1", Arrays.asList("Company1", "Company2"));
-        deliveryConfigMap.put("Item2", List.of("Company3"));
+        deliveryConfigMap.put("Item2", Arrays.asList("Company1", "Company3"));
+        deliveryConfigMap.put("Item3", Arrays.asList("Company3", "Company4"));
 
-        try {
-            Class<SplitAlgorithm> cls = SplitAlgorithm.class;
-            Method method = cls.getDeclaredMethod("canItemBeDeliveredByCompany", Map.class, String.class, String.class);
-            method.setAccessible(true);
+        BasketMatrix basket = BasketMatrix.compile(new CompiledCatalog(deliveryConfigMap), List.of("Item1", "Item2", "Item3"));
+        List<String> companies = DominancePruner.findNonDominatedCompanies(basket);
+
+        assertEquals(2, companies.size());
+        assertTrue(companies.containsAll(List.of("Company1", "Company3")));
+    }
+    @Test
+    public void testBasketDecomposition() {
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        deliveryConfigMap.put("Item1", Arrays.asList("Company1", "Company2"));
+        deliveryConfigMap.put("Item2", Arrays.asList("Company3", "Company4"));
+        deliveryConfigMap.put("Item3", Arrays.asList("Company2", "Company5"));
+
+        BasketMatrix basket = BasketMatrix.compile(new CompiledCatalog(deliveryConfigMap), List.of("Item1", "Item2", "Item3"));
+        List<List<String>> components = BasketDecomposer.decompose(basket, DominancePruner.findNonDominatedCompanies(basket));
+
+        assertEquals(List.of(List.of("Item1", "Item3"), List.of("Item2")), components);
+    }
+    @Test
+    public void testGroupAssignmentMaximizesGroupSizes() {
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        deliveryConfigMap.put("Item1", Arrays.asList("Company1", "Company2"));
+        deliveryConfigMap.put("Item2", List.of("Company1"));
+        deliveryConfigMap.put("Item3", Arrays.asList("Company2", "Company3"));
+        deliveryConfigMap.put("Item4", List.of("Company3"));
+        CompiledCatalog catalog = new CompiledCatalog(deliveryConfigMap);
+
+        BasketMatrix basket = BasketMatrix.compile(catalog, List.of("Item1", "Item2", "Item3", "Item4"));
+        List<Integer> companyIds = List.of(catalog.getCompanyId("Company1"), catalog.getCompanyId("Company2"), catalog.getCompanyId("Company3"));
+
+        Map<String, List<String>> expected = Map.of("Company1", List.of("Item1", "Item2"), "Company3", List.of("Item3", "Item4"));
+        assertEquals(expected, GroupAssigner.assign(basket, companyIds));
+        assertTrue(GroupAssigner.assignOwnersDetailed(basket, companyIds).exhaustive());
+    }
+    @Test
+    public void testGroupAssignmentReportsTruncatedTies() {
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        List<String> items = new ArrayList<>();
+        for (int item = 0; item < 12; item++) {
+            deliveryConfigMap.put("Item" + item, List.of("Company" + item));
+            items.add("Item" + item);
+        }
+        CompiledCatalog catalog = new CompiledCatalog(deliveryConfigMap);
+        BasketMatrix basket = BasketMatrix.compile(catalog, items);
+        List<Integer> companyIds = new ArrayList<>();
+        for (int companyId = 0; companyId < catalog.getCompanyCount(); companyId++) {
+            companyIds.add(companyId);
+        }
+
+        // Twelve single-item companies tie at every step, but disjoint ties lead to the same sizes in any order
+        GroupAssigner.Assignment assignment = GroupAssigner.assignOwnersDetailed(basket, companyIds);
+        assertTrue(assignment.exhaustive());
+        assertEquals(12, assignment.groupCount());
+        for (int owner : assignment.owners()) {
+            assertTrue(owner >= 0);
+        }
+
+        // Twelve companies delivering two neighbours on a ring overlap, far more branches than the cap allows
+        Map<String, List<String>> ringConfigMap = new HashMap<>();
+        for (int item = 0; item < 12; item++) {
+            ringConfigMap.put("Item" + item, Arrays.asList("Company" + item, "Company" + (item + 11) % 12));
+        }
+        CompiledCatalog ringCatalog = new CompiledCatalog(ringConfigMap);
+        GroupAssigner.Assignment ringAssignment = GroupAssigner.assignOwnersDetailed(BasketMatrix.compile(ringCatalog, items), companyIds);
+        assertFalse(ringAssignment.exhaustive());
+        for (int owner : ringAssignment.owners()) {
+            assertTrue(owner >= 0);
+        }
+    }
+    @Test
+    public void testSymmetricTiesKeepSplitCompleted() {
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        List<String> items = new ArrayList<>();
+        for (int group = 0; group < 8; group++) {
+            for (String item : List.of("ItemA" + group, "ItemB" + group)) {
+                deliveryConfigMap.put(item, List.of("Company" + group));
+                items.add(item);
+            }
+        }
+        SplitResult result = new BasketSplitter(deliveryConfigMap).splitDetailed(items);
+
+        assertEquals(8, result.getGroupCount());
+        assertEquals(8, result.getLowerBound());
+        assertTrue(result.isCompleted());
+    }
+    @Test
+    public void testFirstPhaseOpensConstrainedGroupsFirst() {
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        deliveryConfigMap.put("Item1", Arrays.asList("Company1", "Company2"));
+        deliveryConfigMap.put("Item2", Arrays.asList("Company1", "Company2"));
+        deliveryConfigMap.put("Item3", List.of("Company2"));
+        deliveryConfigMap.put("Item4", Arrays.asList("Company1", "Company3"));
+        deliveryConfigMap.put("Item5", Arrays.asList("Company1", "Company3"));
+        deliveryConfigMap.put("Item6", List.of("Company3"));
+        CompiledCatalog catalog = new CompiledCatalog(deliveryConfigMap);
+        BasketMatrix basket = BasketMatrix.compile(catalog, List.of("Item1", "Item2", "Item3", "Item4", "Item5", "Item6"));
+        PriorityQueue<Pair<String, Integer>> ranking = new PriorityQueue<>(Comparator.comparingInt((Pair<String, Integer> pair) -> pair.getValue()).reversed());
+        ranking.add(new Pair<>("Company1", 4));
+        ranking.add(new Pair<>("Company2", 3));
+        ranking.add(new Pair<>("Company3", 3));
+
+        // Visited in basket order, Item1 would open Company1 and Item3 and Item6 would still need their own groups,
+        // three in all. Visiting Item3 and Item6 first opens the two groups every other item fits in.
+        int[] owners = new SplitAlgorithm().firstPhaseOfAlgo(basket, ranking);
+        int company2 = catalog.getCompanyId("Company2");
+        int company3 = catalog.getCompanyId("Company3");
+        assertTrue(Arrays.equals(new int[]{company2, company2, company2, company3, company3, company3}, owners));
+        assertEquals(2, new LocalSearchState(basket, owners).getGroupCount());
+    }
+    @Test
+    public void testLocalSearchStateRemovesCoveredGroup() {
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        deliveryConfigMap.put("Item1", Arrays.asList("Company1", "Company2"));
+        deliveryConfigMap.put("Item2", List.of("Company1"));
+        deliveryConfigMap.put("Item3", Arrays.asList("Company2", "Company3"));
+        deliveryConfigMap.put("Item4", List.of("Company3"));
+        CompiledCatalog catalog = new CompiledCatalog(deliveryConfigMap);
+        BasketMatrix basket = BasketMatrix.compile(catalog, List.of("Item1", "Item2", "Item3", "Item4"));
+        int company1 = catalog.getCompanyId("Company1");
+        int company2 = catalog.getCompanyId("Company2");
+        int company3 = catalog.getCompanyId("Company3");
+
+        LocalSearchState state = new LocalSearchState(basket, new int[]{company2, company1, company2, company3});
+        assertEquals(3, state.getGroupCount());
+        // The two single-item groups come first, the group of Company2 is tried last
+        int first = state.pollSmallestUntriedGroup();
+        int second = state.pollSmallestUntriedGroup();
+        int last = state.pollSmallestUntriedGroup();
+        assertEquals(-1, state.pollSmallestUntriedGroup());
+        assertEquals(3, state.getTriedGroupCount());
+        assertFalse(state.isRemovable(first));
+        assertFalse(state.isRemovable(second));
+        assertTrue(state.isRemovable(last));
+
+        state.removeGroup(last);
+        // Item1 moves to Company1 and Item3 to Company3, both remaining groups stay tried
+        assertEquals(2, state.getGroupCount());
+        assertEquals(2, state.getTriedGroupCount());
+        assertEquals(Map.of("Company1", List.of("Item1", "Item2"), "Company3", List.of("Item3", "Item4")), state.toDeliveryPool());
+    }
+    @Test
+    public void testShadowVerificationRecordsGap() throws InterruptedException {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        ShadowVerifier verifier = basketSplitter.enableShadowVerification(1.0, 16);
+        CountDownLatch verified = new CountDownLatch(1);
+        verifier.setSampleListener(sample -> verified.countDown());
+
+        basketSplitter.split(items);
+
+        assertTrue(verified.await(10, TimeUnit.SECONDS));
+        assertEquals(1, verifier.getVerifiedCount());
+        assertEquals(1, verifier.getExactVerifiedCount());
+        assertEquals(1, verifier.getGapCount(0));
+        basketSplitter.disableShadowVerification();
+    }
+    @Test
+    public void testSplitWithDeadline() {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+
+        SplitResult result = basketSplitter.split(items, Duration.ofSeconds(5));
+        assertTrue(result.isCompleted());
+        assertEquals(2, result.getLowerBound());
+        assertTrue(result.isProvenOptimal());
+
+        SplitResult expiredResult = basketSplitter.split(items, Duration.ZERO);
+        assertTrue(Utils.validateResultCompanies(Utils.readItemsMapFromJsonFile("resources/config.json"), expiredResult.getDeliveryGroups()));
+        assertEquals(items.size(), expiredResult.getDeliveryGroups().values().stream().mapToInt(List::size).sum());
+    }
+    @Test
+    public void testSplitAsyncRejectsWhenQueueIsFull() throws Exception {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (SplitExecutor executor = new SplitExecutor(1, 1, "split-test")) {
+            executor.submit(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            CompletableFuture<SplitResult> queued = basketSplitter.splitAsync(items, executor);
+            CompletableFuture<SplitResult> rejected = basketSplitter.splitAsync(items, executor);
+
+            assertEquals(1, executor.getQueueDepth());
+            ExecutionException exception = assertThrows(ExecutionException.class, rejected::get);
+            assertTrue(exception.getCause() instanceof SplitRejectedException);
+            assertEquals(1, executor.getRejectedCount());
+
+            release.countDown();
+            assertEquals(2, queued.get(10, TimeUnit.SECONDS).getDeliveryGroups().size());
+        }
+    }
+    @Test
+    public void testSplitProcessorPreservesOrder() throws Exception {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> basket1 = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        List<String> basket2 = Utils.readItemsFromJsonFile(new File("resources/basket-2.json").getAbsolutePath());
+        BasketSplitProcessor processor = new BasketSplitProcessor(basketSplitter, ForkJoinPool.commonPool(), 2, true);
+        List<Integer> groupCounts = new ArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+
+        try (SubmissionPublisher<List<String>> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            processor.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(SplitResult result) {
+                    groupCounts.add(result.getDeliveryGroups().size());
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    completed.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    completed.countDown();
+                }
+            });
+            for (int i = 0; i < 3; i++) {
+                publisher.submit(basket2);
+                publisher.submit(basket1);
+            }
+        }
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of(3, 2, 3, 2, 3, 2), groupCounts);
+    }
+    @Test
+    public void testSplitProcessorSignalsOnlyAfterOnSubscribe() throws Exception {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        BasketSplitProcessor processor = new BasketSplitProcessor(basketSplitter, ForkJoinPool.commonPool(), 2, true);
+        List<String> signals = new ArrayList<>();
+        CountDownLatch failed = new CountDownLatch(1);
+
+        processor.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                // An upstream failing on another thread while the subscriber is still being set up
+                Thread failing = new Thread(() -> processor.onError(new IllegalStateException("Upstream failed")));
+                failing.start();
+                try {
+                    failing.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (signals) {
+                    signals.add("onSubscribe");
+                }
+            }
+
+            @Override
+            public void onNext(SplitResult result) {
+                synchronized (signals) {
+                    signals.add("onNext");
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                synchronized (signals) {
+                    signals.add("onError");
+                }
+                failed.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                synchronized (signals) {
+                    signals.add("onComplete");
+                }
+            }
+        });
+
+        assertTrue(failed.await(10, TimeUnit.SECONDS));
+        synchronized (signals) {
+            assertEquals(List.of("onSubscribe", "onError"), signals);
+        }
+    }
+    @Test
+    public void testCompactSplitResult() {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        SplitResult result = basketSplitter.splitDetailed(items);
+
+        assertEquals(2, result.getGroupCount());
+        assertEquals("Courier", result.getCompanyName(0));
+        assertEquals(5, result.getGroupSize(0));
+        assertEquals("Cocoa Butter", result.getItemName(0, 0));
+        assertEquals("Fond - Chocolate", result.getItemName(1, 0));
+        assertSame(result.getDeliveryGroups(), result.getDeliveryGroups());
+        assertThrows(UnsupportedOperationException.class, () -> result.getDeliveryGroups().clear());
+
+        // Plain splits stay owned by the caller
+        Map<String, List<String>> deliveryGroups = basketSplitter.split(items);
+        assertEquals(result.getDeliveryGroups(), deliveryGroups);
+        deliveryGroups.get("Courier").add("Cocoa Butter");
+        deliveryGroups.remove("Courier");
+        assertEquals(2, result.getDeliveryGroups().size());
+    }
+    @Test
+    public void testSplitResultJsonMatchesStoredAnswer() throws Exception {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        SplitResult result = basketSplitter.splitDetailed(items);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SplitResultJsonWriter.writeTo(result, output);
+        ByteBuffer buffer = ByteBuffer.allocate(SplitResultJsonWriter.serializedSize(result));
+        SplitResultJsonWriter.writeTo(result, buffer);
+
+        assertFalse(buffer.hasRemaining());
+        assertTrue(Arrays.equals(output.toByteArray(), buffer.array()));
+        JSONObject jsonObject = (JSONObject) new JSONParser().parse(output.toString(StandardCharsets.UTF_8));
+        Map<String, List<String>> parsed = new HashMap<>();
+        for (Object company : jsonObject.keySet()) {
+            List<String> groupItems = new ArrayList<>();
+            for (Object item : (JSONArray) jsonObject.get(company)) {
+                groupItems.add((String) item);
+            }
+            parsed.put((String) company, groupItems);
+        }
+        assertEquals(Utils.readItemsMapFromJsonFile("resources/answers/result-1.json"), parsed);
+        assertEquals("\"a\\\"b\\\\c\\u0001\"", new String(SplitResultJsonWriter.encodeJsonString("a\"b\\c\u0001"), StandardCharsets.UTF_8));
+    }
+    @Test
+    public void testOffHeapCatalog() throws IOException {
+        Map<String, List<String>> deliveryConfigMap = Utils.readItemsMapFromJsonFile("resources/config.json");
+        OffHeapCatalog catalog = new OffHeapCatalog(deliveryConfigMap);
+
+        assertEquals(-1, catalog.getProductId("Unknown product"));
+        for (Map.Entry<String, List<String>> entry : deliveryConfigMap.entrySet()) {
+            List<String> companies = new CatalogMapView(catalog).get(entry.getKey());
+            assertEquals(entry.getKey(), catalog.getProductName(catalog.getProductId(entry.getKey())));
+            assertTrue(companies.size() == entry.getValue().size() && companies.containsAll(entry.getValue()));
+        }
+
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        Map<String, List<String>> correctSplit = Utils.readItemsMapFromJsonFile("resources/answers/result-1.json");
+        assertEquals(correctSplit, new BasketSplitter(catalog).split(items));
+
+        // Sizes and the buffer come from the encoded names kept off the heap, the stream from copies of them
+        SplitResult offHeapResult = new BasketSplitter(catalog).splitDetailed(items);
+        ByteBuffer offHeapJson = ByteBuffer.allocate(SplitResultJsonWriter.serializedSize(offHeapResult));
+        SplitResultJsonWriter.writeTo(offHeapResult, offHeapJson);
+        assertFalse(offHeapJson.hasRemaining());
+        ByteArrayOutputStream streamJson = new ByteArrayOutputStream();
+        SplitResultJsonWriter.writeTo(offHeapResult, streamJson);
+        assertTrue(Arrays.equals(streamJson.toByteArray(), offHeapJson.array()));
+        assertEquals(SplitResultJsonWriter.serializedSize(new BasketSplitter(deliveryConfigMap).splitDetailed(items)), offHeapJson.capacity());
+
+        CatalogFootprint.Report report = CatalogFootprint.compare(deliveryConfigMap, catalog);
+        assertTrue(report.offHeapBytes() > 0);
+        assertTrue(report.offHeapCatalogHeapBytes() < report.mapHeapBytes());
+    }
+    @Test
+    public void testOffHeapCatalogRejectsBitsetsOverTwoGigabytes() {
+        // 2^15 products with 2^19 companies need 2^15 * 2^13 words of company bitsets, 2 GB exactly
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        int companyCount = 1 << 19;
+        int productCount = 1 << 15;
+        int companiesPerProduct = companyCount / productCount;
+        for (int product = 0; product < productCount; product++) {
+            List<String> companies = new ArrayList<>(companiesPerProduct);
+            for (int company = 0; company < companiesPerProduct; company++) {
+                companies.add("C" + (product * companiesPerProduct + company));
+            }
+            deliveryConfigMap.put("P" + product, companies);
+        }
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new OffHeapCatalog(deliveryConfigMap));
+        assertEquals("Company bitsets take more than 2 GB: 2147483648 bytes", e.getMessage());
+    }
+    @Test
+    public void testPerfectHashIndex() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            keys.add("Product " + i);
+        }
+        PerfectHashIndex index = PerfectHashIndex.build(keys);
+
+        boolean[] used = new boolean[keys.size()];
+        for (String key : keys) {
+            int slot = index.lookup(key);
+            assertTrue(slot >= 0 && slot < keys.size() && !used[slot]);
+            used[slot] = true;
+        }
+        CompiledCatalog catalog = new CompiledCatalog(Utils.readItemsMapFromJsonFile("resources/config.json"));
+        assertEquals(-1, catalog.getProductId("Unknown product"));
+        assertEquals("Cocoa Butter", catalog.getProductName(catalog.getProductId("Cocoa Butter")));
+    }
+    @Test
+    public void testPerfectHashIndexBuildsMillionsOfKeys() {
+        int keyCount = 3_000_000;
+        List<String> keys = new ArrayList<>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            keys.add("Product " + i);
+        }
+        PerfectHashIndex index = PerfectHashIndex.build(keys);
+
+        assertEquals(keyCount, index.size());
+        long[] used = new long[Bitsets.wordCount(keyCount)];
+        for (String key : keys) {
+            int slot = index.lookup(key);
+            assertTrue(slot >= 0 && slot < keyCount && !Bitsets.get(used, slot));
+            Bitsets.set(used, slot);
+        }
+        assertTrue(index.getBuildTimeNanos() < TimeUnit.SECONDS.toNanos(30));
+        assertThrows(IllegalArgumentException.class, () -> PerfectHashIndex.build(List.of("Product 1", "Product 2", "Product 1")));
+    }
+    @Test
+    public void testCatalogRegistry() {
+        CatalogRegistry registry = new CatalogRegistry(1);
+        registry.register("north", new File("resources/config.json").getAbsolutePath());
+        registry.register("south", () -> Utils.readItemsMapFromJsonFile("resources/config.json"));
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        Map<String, List<String>> correctSplit = Utils.readItemsMapFromJsonFile("resources/answers/result-1.json");
+
+        assertEquals(0, registry.getLoadedTenantCount());
+        BasketSplitter north = registry.getSplitter("north");
+        assertSame(north, registry.getSplitter("north"));
+        assertEquals(correctSplit, north.split(items));
+        BasketSplitter south = registry.getSplitter("south");
+        assertEquals(correctSplit, south.split(items));
+
+        // Both tenants share the company names, and the budget keeps only the latest one loaded
+        assertSame(north.getCatalog().getCompanyName(north.getCatalog().getCompanyId("Courier")),
+                south.getCatalog().getCompanyName(south.getCatalog().getCompanyId("Courier")));
+        assertEquals(1, registry.getLoadedTenantCount());
+        CatalogRegistry.TenantMetrics metrics = registry.getMetrics("north");
+        assertFalse(metrics.loaded());
+        assertEquals(1, metrics.loadCount());
+        assertEquals(1, metrics.hitCount());
+        assertEquals(1, metrics.evictionCount());
+        assertThrows(IllegalArgumentException.class, () -> registry.getSplitter("west"));
+    }
+    @Test
+    public void testCatalogRegistrySharesCatalogStructures() throws Exception {
+        CatalogRegistry registry = new CatalogRegistry(Long.MAX_VALUE);
+        registry.register("north", new File("resources/config.json").getAbsolutePath());
+        registry.register("south", () -> Utils.readItemsMapFromJsonFile("resources/config.json"));
+        registry.register("east", () -> {
+            Map<String, List<String>> deliveryConfigMap = Utils.readItemsMapFromJsonFile("resources/config.json");
+            deliveryConfigMap.put("Drone parts", List.of("Drone delivery"));
+            return deliveryConfigMap;
+        });
+        CompiledCatalog north = (CompiledCatalog) registry.getSplitter("north").getCatalog();
+        CompiledCatalog south = (CompiledCatalog) registry.getSplitter("south").getCatalog();
+        CompiledCatalog east = (CompiledCatalog) registry.getSplitter("east").getCatalog();
+
+        // One company ID space, new companies are appended to it
+        for (int companyId = 0; companyId < north.getCompanyCount(); companyId++) {
+            String company = north.getCompanyName(companyId);
+            assertEquals(companyId, south.getCompanyId(company));
+            assertEquals(companyId, east.getCompanyId(company));
+            assertSame(north.getCompanyNameJson(companyId), east.getCompanyNameJson(companyId));
+        }
+        assertEquals(north.getCompanyCount(), east.getCompanyId("Drone delivery"));
+        // Products of every tenant share their names, encoded names and company bitsets
+        for (int productId = 0; productId < north.getProductCount(); productId++) {
+            String product = north.getProductName(productId);
+            for (CompiledCatalog other : List.of(south, east)) {
+                int otherProductId = other.getProductId(product);
+                assertSame(product, other.getProductName(otherProductId));
+                assertSame(north.getProductNameJson(productId), other.getProductNameJson(otherProductId));
+                assertSame(north.getCompanyMask(productId), other.getCompanyMask(otherProductId));
+            }
+        }
+        // Splitters keep the compiled catalog only, and a tenant adding nothing new is cheaper than the first one
+        Field field = BasketSplitter.class.getDeclaredField("deliveryConfigMap");
+        field.setAccessible(true);
+        assertTrue(field.get(registry.getSplitter("south")) instanceof CatalogMapView);
+        assertTrue(registry.getMetrics("south").estimatedHeapBytes() < registry.getMetrics("north").estimatedHeapBytes());
+    }
+    @Test
+    public void testSplitBenchmarkFlagsRegressions() throws Exception {
+        SplitBenchmark benchmark = new SplitBenchmark(SolverMode.HEURISTIC, Duration.ofMillis(10), 1, 3);
+        List<SplitBenchmark.Measurement> measurements = benchmark.run(new File("resources").toPath());
+
+        assertEquals(3, measurements.size());
+        assertEquals("basket-1.json", measurements.get(0).basket());
+        for (int basket = 1; basket <= 3; basket++) {
+            Map<String, List<String>> correctSplit = Utils.readItemsMapFromJsonFile("resources/answers/result-" + basket + ".json");
+            assertEquals(correctSplit.size(), measurements.get(basket - 1).groupCount());
+        }
+
+        File report = File.createTempFile("benchmark", ".json");
+        report.deleteOnExit();
+        Files.writeString(report.toPath(), SplitBenchmark.toJson(SolverMode.HEURISTIC, measurements, List.of()));
+        List<SplitBenchmark.Measurement> baseline = SplitBenchmark.readMeasurements(report.toPath());
+        assertEquals(measurements, baseline);
+        assertTrue(SplitBenchmark.compare(measurements, baseline, 0.2).isEmpty());
+
+        SplitBenchmark.Measurement first = measurements.get(0);
+        SplitBenchmark.Measurement better = new SplitBenchmark.Measurement(first.basket(), first.itemCount(), first.groupCount() - 1,
+                first.largestGroupSize(), first.lowerBound(), true, first.p50Nanos(), first.p90Nanos(), first.p99Nanos(), first.maxNanos(), 0);
+        List<SplitBenchmark.Regression> regressions = SplitBenchmark.compare(measurements, List.of(better), 0.2);
+        assertEquals(1, regressions.size());
+        assertEquals(SplitBenchmark.Regression.Kind.QUALITY, regressions.get(0).kind());
+    }
+    @Test
+    public void testAnswerStore() throws Exception {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        List<String> reordered = new ArrayList<>(items);
+        Collections.reverse(reordered);
+        AnswerStoreBuilder builder = new AnswerStoreBuilder(basketSplitter, Duration.ofMillis(100));
+        builder.add(items);
+        builder.add(reordered);
+        builder.add(List.of("Unknown product"));
+        assertEquals(1, builder.getDistinctBasketCount());
+        assertEquals(1, builder.getSkippedBasketCount());
+
+        File file = File.createTempFile("answers", ".bin");
+        file.deleteOnExit();
+        assertEquals(1, builder.write(file.toPath(), 10));
+        AnswerStore store = basketSplitter.loadAnswerStore(file.toPath());
+        assertFalse(store.isStale());
+        Map<String, List<String>> correctSplit = Utils.readItemsMapFromJsonFile("resources/answers/result-1.json");
+        assertEquals(correctSplit, basketSplitter.split(items));
+        assertEquals(1, store.getHitCount());
+        assertNull(store.lookup(items.subList(0, 2)));
+
+        // A store built for another configuration is ignored
+        BasketSplitter otherSplitter = new BasketSplitter(new File("resources/config1.json").getAbsolutePath());
+        assertTrue(otherSplitter.loadAnswerStore(file.toPath()).isStale());
+    }
+    @Test
+    public void testAnswerStoreKeepsCompletionStatus() throws Exception {
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        String path = new File("resources/config.json").getAbsolutePath();
+        for (Duration budget : List.of(Duration.ZERO, Duration.ofSeconds(1))) {
+            BasketSplitter basketSplitter = new BasketSplitter(path);
+            boolean completed = basketSplitter.split(items, budget).isCompleted();
+            AnswerStoreBuilder builder = new AnswerStoreBuilder(basketSplitter, budget);
+            builder.add(items);
+            File file = File.createTempFile("answers", ".bin");
+            file.deleteOnExit();
+            builder.write(file.toPath(), 10);
+
+            // A search cut by the budget of the builder stays reported as cut when answered from the store
+            AnswerStore store = basketSplitter.loadAnswerStore(file.toPath());
+            assertEquals(completed, store.lookup(items).isCompleted());
+            assertEquals(budget.isZero(), !completed);
+        }
+    }
+    @Test
+    public void testWarmupSetsReadiness() throws Exception {
+        String path = new File("resources/config.json").getAbsolutePath();
+        assertTrue(new BasketSplitter(path).isReady());
+
+        BasketSplitter basketSplitter = new BasketSplitter(path, new SplitWarmup(200, Duration.ofSeconds(10), 1));
+        SplitWarmup.Report report = basketSplitter.getWarmupFuture().get(30, TimeUnit.SECONDS);
+        assertTrue(basketSplitter.isReady());
+        assertTrue(report.calls() >= 200);
+        assertTrue(report.largestBasketSize() > 1);
+    }
+    @Test
+    public void testFailedWarmupLeavesSplitterNotReady() throws Exception {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath(),
+                new SplitWarmup(200, Duration.ofSeconds(10), 1) {
+                    @Override
+                    public Report run(BasketSplitter splitter) {
+                        throw new IllegalStateException("Warm-up failed");
+                    }
+                });
+        ExecutionException e = assertThrows(ExecutionException.class, () -> basketSplitter.getWarmupFuture().get(30, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertFalse(basketSplitter.isReady());
+    }
+    @Test
+    public void testBitsetKernelsAgreeWithBitSet() {
+        List<BitsetKernel> kernels = new ArrayList<>(List.of(Bitsets.getScalarKernel()));
+        if (Bitsets.getVectorKernel() != null) {
+            kernels.add(Bitsets.getVectorKernel());
+        }
+        Random random = new Random(5);
+        for (int wordCount : new int[]{1, 3, 8, 17, 64}) {
+            long[] first = new long[wordCount];
+            long[] second = new long[wordCount];
+            for (int word = 0; word < wordCount; word++) {
+                first[word] = random.nextLong();
+                second[word] = random.nextLong() | first[word];
+            }
+            BitSet firstBits = BitSet.valueOf(first);
+            BitSet common = BitSet.valueOf(first);
+            common.and(BitSet.valueOf(second));
+            BitSet difference = BitSet.valueOf(second);
+            difference.andNot(firstBits);
+
+            for (BitsetKernel kernel : kernels) {
+                assertEquals(firstBits.cardinality(), kernel.popCount(first));
+                assertEquals(common.cardinality(), kernel.intersectionCount(first, second));
+                assertTrue(kernel.isSubset(first, second));
+                assertEquals(!difference.isEmpty(), !kernel.isSubset(second, first));
+                assertTrue(kernel.intersects(first, second));
+                long[] target = second.clone();
+                kernel.andNot(target, first);
+                assertTrue(Arrays.equals(Arrays.copyOf(difference.toLongArray(), wordCount), target));
+            }
+        }
+    }
+    @Test
+    public void testAllocationProfilerChargesPhases() {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        AllocationProfiler profiler = new AllocationProfiler();
+        basketSplitter.setAllocationProfiler(profiler);
+        basketSplitter.split(items);
+        basketSplitter.setAllocationProfiler(null);
+        basketSplitter.split(items);
+
+        AllocationProfiler.BucketReport bucket = profiler.getReport().buckets().get(0);
+        assertEquals("1-8", bucket.bucket());
+        assertEquals(1, bucket.splitCount());
+        assertTrue(bucket.bytesByPhase().get(AllocationProfiler.Phase.RESULT) > 0);
+        assertTrue(bucket.getBytesPerSplit() > 0);
+    }
+    @Test
+    public void testRepeatedItemsCountWithTheirQuantity() {
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        deliveryConfigMap.put("Item1", Arrays.asList("Company1", "Company2"));
+        deliveryConfigMap.put("Item2", List.of("Company2"));
+        deliveryConfigMap.put("Item3", List.of("Company1"));
+        deliveryConfigMap.put("Item4", List.of("Company1"));
+        BasketSplitter basketSplitter = new BasketSplitter(deliveryConfigMap);
+
+        // Five copies of Item2 make the group of Company2 the largest one, so it takes Item1
+        List<String> items = List.of("Item2", "Item1", "Item2", "Item3", "Item2", "Item4", "Item2", "Item2");
+        assertEquals(Map.of("Company2", List.of("Item2", "Item1", "Item2", "Item2", "Item2", "Item2"), "Company1", List.of("Item3", "Item4")),
+                basketSplitter.split(items));
+
+        Map<String, Integer> itemQuantities = new LinkedHashMap<>();
+        itemQuantities.put("Item1", 1);
+        itemQuantities.put("Item2", 5);
+        itemQuantities.put("Item3", 1);
+        itemQuantities.put("Item4", 1);
+        SplitResult result = basketSplitter.splitDetailed(itemQuantities);
+        assertEquals(Map.of("Company2", List.of("Item1", "Item2", "Item2", "Item2", "Item2", "Item2"), "Company1", List.of("Item3", "Item4")),
+                result.getDeliveryGroups());
+        assertTrue(result.isProvenOptimal());
+
+        itemQuantities.put("Item4", 0);
+        assertThrows(IllegalArgumentException.class, () -> basketSplitter.split(itemQuantities));
+    }
+    @Test
+    public void testSidecarServesSplits() throws Exception {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        Map<String, List<String>> correctSplit = Utils.readItemsMapFromJsonFile("resources/answers/result-1.json");
+        Path directory = Files.createTempDirectory("split-sidecar");
 
-            SplitAlgorithm splitAlgorithmInstance = new SplitAlgorithm();
-            assertTrue((boolean) method.invoke(splitAlgorithmInstance, deliveryConfigMap, "Item1", "Company1"));
-            assertTrue((boolean) method.invoke(splitAlgorithmInstance, deliveryConfigMap, "Item2", "Company3"));
-            assertFalse((boolean) method.invoke(splitAlgorithmInstance, deliveryConfigMap, "Item1", "Company3"));
-            assertFalse((boolean) method.invoke(splitAlgorithmInstance, deliveryConfigMap, "Item3", "Company1"));
-        }catch (Throwable e){
-            System.out.println(e);
+        try (SplitSidecarServer server = new SplitSidecarServer(basketSplitter, directory.resolve("split.sock"));
+             SplitSidecarClient client = SplitSidecarClient.connect(server.getSocketPath())) {
+            assertEquals(correctSplit, client.split(items));
+            assertEquals(List.of(correctSplit, correctSplit, correctSplit), client.splitAll(List.of(items, items, items)));
+
+            SplitSidecarClient.Catalog catalog = client.fetchCatalog();
+            int[] productIds = items.stream().mapToInt(catalog.productNames()::indexOf).toArray();
+            Map<String, List<String>> idSplit = new HashMap<>();
+            for (Map.Entry<Integer, int[]> group : client.splitIds(productIds).entrySet()) {
+                idSplit.put(catalog.companyNames().get(group.getKey()),
+                        Arrays.stream(group.getValue()).mapToObj(catalog.productNames()::get).toList());
+            }
+            assertEquals(correctSplit, idSplit);
+
+            assertThrows(IOException.class, () -> client.splitIds(new int[]{-1}));
+            assertEquals(correctSplit, client.split(items));
+            assertEquals(1, server.getErrorCount());
         }
+        assertFalse(Files.exists(directory.resolve("split.sock")));
+        Files.delete(directory);
+    }
+    @Test
+    public void testSidecarRejectsBasketsOverItemCap() throws Exception {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        Path directory = Files.createTempDirectory("split-sidecar");
 
+        try (SplitSidecarServer server = new SplitSidecarServer(basketSplitter, directory.resolve("split.sock"), 100);
+             SplitSidecarClient client = SplitSidecarClient.connect(server.getSocketPath())) {
+            // A single entry with two billion copies is rejected before anything is allocated for them
+            IOException e = assertThrows(IOException.class, () -> client.split(Map.of(items.get(0), Integer.MAX_VALUE)));
+            assertTrue(e.getMessage().contains("more than 100 items"));
+            assertThrows(IOException.class, () -> client.split(Map.of(items.get(0), 60, items.get(1), 41)));
 
+            Map<String, Integer> itemQuantities = new LinkedHashMap<>();
+            itemQuantities.put(items.get(0), 60);
+            itemQuantities.put(items.get(1), 40);
+            assertEquals(basketSplitter.split(itemQuantities), client.split(itemQuantities));
+            assertEquals(2, server.getErrorCount());
+        }
+        Files.delete(directory);
+    }
+    @Test
+    public void testSidecarPipelinesLargeBaskets() throws Exception {
+        // 64 baskets of 500 items with 30-byte names take about 2 MB of requests, far more than a socket buffer
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        List<String> products = new ArrayList<>();
+        for (int product = 0; product < 2000; product++) {
+            String name = String.format("Product with a long name %05d", product);
+            deliveryConfigMap.put(name, List.of("Company" + product % 7, "Company" + product % 11));
+            products.add(name);
+        }
+        BasketSplitter basketSplitter = new BasketSplitter(deliveryConfigMap);
+        List<List<String>> baskets = new ArrayList<>();
+        for (int basket = 0; basket < 64; basket++) {
+            baskets.add(products.subList(basket * 23, basket * 23 + 500));
+        }
+        Path directory = Files.createTempDirectory("split-sidecar");
+
+        try (SplitSidecarServer server = new SplitSidecarServer(basketSplitter, directory.resolve("split.sock"));
+             SplitSidecarClient client = SplitSidecarClient.connect(server.getSocketPath())) {
+            List<Map<String, List<String>>> results = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> client.splitAll(baskets));
+            assertEquals(64, results.size());
+            for (int basket = 0; basket < 64; basket += 21) {
+                assertEquals(basketSplitter.split(baskets.get(basket)), results.get(basket));
+            }
+        }
+        Files.delete(directory);
+    }
+    @Test
+    public void testSidecarPagesCatalogLargerThanFrame() throws Exception {
+        // 600 names of 30 KB make a catalog of 18 MB, more than the 16 MB of a frame
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        for (int product = 0; product < 600; product++) {
+            deliveryConfigMap.put(String.format("%03d", product) + "x".repeat(30_000), List.of("Company" + product % 3));
+        }
+        CompiledCatalog catalog = new CompiledCatalog(deliveryConfigMap);
+        Path directory = Files.createTempDirectory("split-sidecar");
+
+        try (SplitSidecarServer server = new SplitSidecarServer(new BasketSplitter(catalog), directory.resolve("split.sock"));
+             SplitSidecarClient client = SplitSidecarClient.connect(server.getSocketPath())) {
+            SplitSidecarClient.Catalog fetched = client.fetchCatalog();
+            assertEquals(2, server.getRequestCount());
+            assertEquals(AnswerStore.configHash(catalog), fetched.configHash());
+            assertEquals(List.of(catalog.getCompanyName(0), catalog.getCompanyName(1), catalog.getCompanyName(2)), fetched.companyNames());
+            assertEquals(600, fetched.productNames().size());
+            for (int productId = 0; productId < 600; productId++) {
+                assertEquals(catalog.getProductName(productId), fetched.productNames().get(productId));
+            }
+        }
+        Files.delete(directory);
+    }
+    @Test
+    public void testSchedulerRoutesByEstimatedCost() throws Exception {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        List<String> smallItems = Utils.readItemsFromJsonFile(new File("resources/basket-1.json").getAbsolutePath());
+        List<String> largeItems = Utils.readItemsFromJsonFile(new File("resources/basket-2.json").getAbsolutePath());
+        Map<String, List<String>> correctSplit = Utils.readItemsMapFromJsonFile("resources/answers/result-1.json");
+
+        long smallCost;
+        try (SplitScheduler scheduler = new SplitScheduler(basketSplitter, 1, 1, 4, 0)) {
+            smallCost = scheduler.estimateCost(smallItems);
+            assertEquals(smallCost, scheduler.estimateCost(concat(smallItems, smallItems)));
+            assertTrue(smallCost < scheduler.estimateCost(largeItems));
+        }
+        try (SplitScheduler scheduler = new SplitScheduler(basketSplitter, 1, 1, 4, smallCost)) {
+            assertEquals(SplitScheduler.Lane.FAST, scheduler.classify(smallItems));
+            assertEquals(SplitScheduler.Lane.HEAVY, scheduler.classify(largeItems));
+
+            assertEquals(correctSplit, scheduler.submit(smallItems).get(10, TimeUnit.SECONDS).getDeliveryGroups());
+            scheduler.submit(largeItems).get(10, TimeUnit.SECONDS);
+            scheduler.submit(largeItems).get(10, TimeUnit.SECONDS);
+
+            SplitScheduler.LaneMetrics fast = scheduler.getMetrics(SplitScheduler.Lane.FAST);
+            SplitScheduler.LaneMetrics heavy = scheduler.getMetrics(SplitScheduler.Lane.HEAVY);
+            assertEquals(1, fast.submitted());
+            assertEquals(2, heavy.submitted());
+            assertEquals(0, heavy.rejected());
+            assertTrue(heavy.maxWaitNanos() >= heavy.getMeanWaitNanos());
+        }
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> items = new ArrayList<>(first);
+        items.addAll(second);
+        return items;
+    }
+    @Test
+    public void testAdaptiveSelectionSamplesEveryStrategy() throws Exception {
+        BasketSplitter basketSplitter = new BasketSplitter(new File("resources/config.json").getAbsolutePath());
+        Map<String, List<String>> deliveryConfigMap = Utils.readItemsMapFromJsonFile("resources/config.json");
+        List<String> items = Utils.readItemsFromJsonFile(new File("resources/basket-2.json").getAbsolutePath());
+        AdaptiveSelector selector = basketSplitter.enableAdaptiveSelection(Duration.ofMillis(50), Duration.ofMillis(1));
+        List<AdaptiveSelector.Selection> selections = new ArrayList<>();
+        selector.setSelectionListener(selections::add);
+
+        for (int i = 0; i < 20; i++) {
+            Map<String, List<String>> split = basketSplitter.split(items);
+            assertTrue(Utils.validateResultCompanies(deliveryConfigMap, split));
+            assertFalse(Utils.hasRepeatedElements(split));
+            assertEquals(items.size(), split.values().stream().mapToInt(List::size).sum());
+        }
+        assertEquals(20, selections.size());
+        assertEquals(1, selector.getBucketCount());
+        for (AdaptiveSelector.Strategy strategy : List.of(AdaptiveSelector.Strategy.GREEDY, AdaptiveSelector.Strategy.HEURISTIC, AdaptiveSelector.Strategy.EXACT)) {
+            assertTrue(selector.getMetrics(strategy).selections() >= 4);
+        }
+        assertEquals(0, selector.getMetrics(AdaptiveSelector.Strategy.CACHE).selections());
+        AdaptiveSelector.Features features = selections.get(0).features();
+        assertEquals(items.size(), features.itemCount());
+        assertTrue(features.packingBound() <= selections.get(0).groupCount());
+
+        SearchDeadline parent = SearchDeadline.none();
+        SearchDeadline limited = parent.limitTo(Duration.ofHours(1));
+        assertFalse(limited.isExpired());
+        parent.cancel();
+        assertTrue(limited.isExpired());
+
+        basketSplitter.disableAdaptiveSelection();
+        basketSplitter.split(items);
+        assertEquals(20, selections.size());
+    }
+    @Test
+    public void testAdaptiveSelectionConvergesToCheapestStrategy() {
+        // The greedy pass and the heuristic search need 4 groups, only the exact solver finds Company1, Company4 and Company6
+        Map<String, List<String>> deliveryConfigMap = new HashMap<>();
+        deliveryConfigMap.put("Item1", Arrays.asList("Company1", "Company3"));
+        deliveryConfigMap.put("Item2", Arrays.asList("Company1", "Company2"));
+        deliveryConfigMap.put("Item3", Arrays.asList("Company2", "Company6"));
+        deliveryConfigMap.put("Item4", List.of("Company6"));
+        deliveryConfigMap.put("Item5", Arrays.asList("Company4", "Company5"));
+        deliveryConfigMap.put("Item6", Arrays.asList("Company2", "Company3", "Company4"));
+        BasketSplitter basketSplitter = new BasketSplitter(new CompiledCatalog(deliveryConfigMap));
+        List<String> items = List.of("Item1", "Item2", "Item3", "Item4", "Item5", "Item6");
+        // An extra group costs an hour, so the exact solver is the cheapest strategy whatever the latencies
+        AdaptiveSelector selector = basketSplitter.enableAdaptiveSelection(Duration.ofSeconds(1), Duration.ofHours(1));
+        List<AdaptiveSelector.Selection> selections = new ArrayList<>();
+        selector.setSelectionListener(selections::add);
+
+        for (int i = 0; i < 1000; i++) {
+            basketSplitter.split(items);
+        }
+        long explorations = 0;
+        long lateExplorations = 0;
+        for (int decision = 12; decision < selections.size(); decision++) {
+            AdaptiveSelector.Selection selection = selections.get(decision);
+            if (selection.explored()) {
+                assertTrue(selection.strategy() != AdaptiveSelector.Strategy.EXACT);
+                explorations++;
+                lateExplorations += decision >= 500 ? 1 : 0;
+            } else {
+                assertEquals(AdaptiveSelector.Strategy.EXACT, selection.strategy());
+                assertEquals(3, selection.groupCount());
+            }
+        }
+        // Retries of the losing strategies back off, a fixed period of 32 would explore 31 times
+        assertTrue(explorations <= 10);
+        assertTrue(lateExplorations <= 2);
     }
     @Test
     public void testCreateDeliveryMapFromJSON_NonExistingFile() {